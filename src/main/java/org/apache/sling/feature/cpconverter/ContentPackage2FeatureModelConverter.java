@@ -18,20 +18,18 @@ package org.apache.sling.feature.cpconverter;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
-import org.apache.jackrabbit.vault.packaging.CyclicDependencyException;
-import org.apache.jackrabbit.vault.packaging.Dependency;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
@@ -39,12 +37,19 @@ import org.apache.sling.feature.cpconverter.acl.AclManager;
 import org.apache.sling.feature.cpconverter.artifacts.ArtifactsDeployer;
 import org.apache.sling.feature.cpconverter.artifacts.FileArtifactWriter;
 import org.apache.sling.feature.cpconverter.features.FeaturesManager;
+import org.apache.sling.feature.cpconverter.filtering.ArchiveEntriesValidator;
 import org.apache.sling.feature.cpconverter.filtering.ResourceFilter;
+import org.apache.sling.feature.cpconverter.handlers.ConfigurationsCache;
 import org.apache.sling.feature.cpconverter.handlers.EntryHandler;
 import org.apache.sling.feature.cpconverter.handlers.EntryHandlersManager;
 import org.apache.sling.feature.cpconverter.handlers.NodeTypesEntryHandler;
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent;
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Phase;
+import org.apache.sling.feature.cpconverter.progress.ProgressListener;
 import org.apache.sling.feature.cpconverter.vltpkg.BaseVaultPackageScanner;
+import org.apache.sling.feature.cpconverter.vltpkg.PackageDependencyGraph;
 import org.apache.sling.feature.cpconverter.vltpkg.RecollectorVaultPackageScanner;
+import org.apache.sling.feature.cpconverter.vltpkg.SubContentPackagesResolver;
 import org.apache.sling.feature.cpconverter.vltpkg.VaultPackageAssembler;
 
 public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanner {
@@ -55,7 +60,7 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
 
     private static final String DEFEAULT_VERSION = "0.0.0";
 
-    private final Map<PackageId, String> subContentPackages = new HashMap<>();
+    private final SubContentPackagesResolver subContentPackagesResolver = new SubContentPackagesResolver();
 
     private EntryHandlersManager handlersManager;
 
@@ -65,19 +70,31 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
 
     private ResourceFilter resourceFilter;
 
+    private boolean failFast = false;
+
     private ArtifactsDeployer artifactsDeployer;
 
+    private ConfigurationsCache configurationsCache;
+
     private VaultPackageAssembler mainPackageAssembler = null;
 
     private RecollectorVaultPackageScanner recollectorVaultPackageScanner;
 
+    private PackageDependencyGraph dependencyGraph;
+
+    // synthetic packages of the same sub-content package, found in different packages, are identical
+    private final Map<PackageId, byte[]> syntheticPackages = new HashMap<>();
+
+    // per-handler entries counters, logged once per content-package instead of one line per entry
+    private final Map<String, Integer> handledEntries = new TreeMap<>();
+
     public ContentPackage2FeatureModelConverter() {
         this(false);
     }
 
     public ContentPackage2FeatureModelConverter(boolean strictValidation) {
         super(strictValidation);
-        this.recollectorVaultPackageScanner = new RecollectorVaultPackageScanner(this, this.packageManager, strictValidation, subContentPackages);
+        this.recollectorVaultPackageScanner = new RecollectorVaultPackageScanner(this, this.packageManager, strictValidation, subContentPackagesResolver);
     }
 
     public ContentPackage2FeatureModelConverter setEntryHandlersManager(EntryHandlersManager handlersManager) {
@@ -99,6 +116,21 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
         return this;
     }
 
+    /**
+     * When enabled, all the input content-packages entries names are validated against the resource filter
+     * before starting the conversion.
+     */
+    public ContentPackage2FeatureModelConverter setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    @Override
+    public ContentPackage2FeatureModelConverter setProgressListener(ProgressListener progressListener) {
+        super.setProgressListener(progressListener);
+        return this;
+    }
+
     public ArtifactsDeployer getArtifactsDeployer() {
         return artifactsDeployer;
     }
@@ -117,18 +149,35 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
         return this;
     }
 
+    public ConfigurationsCache getConfigurationsCache() {
+        return configurationsCache;
+    }
+
+    public ContentPackage2FeatureModelConverter setConfigurationsCache(ConfigurationsCache configurationsCache) {
+        this.configurationsCache = configurationsCache;
+        return this;
+    }
+
+    public PackageDependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
     public VaultPackageAssembler getMainPackageAssembler() {
         return mainPackageAssembler;
     }
 
     public void convert(File...contentPackages) throws Exception {
         requireNonNull(contentPackages , "Null content-package(s) can not be converted.");
-        secondPass(firstPass(contentPackages));
+        try {
+            secondPass(firstPass(contentPackages));
+        } finally {
+            syntheticPackages.clear();
+        }
     }
 
     protected Collection<VaultPackage> firstPass(File...contentPackages) throws Exception {
-        Map<PackageId, VaultPackage> idFileMap = new LinkedHashMap<>();
-        Map<PackageId, VaultPackage> idPackageMapping = new ConcurrentHashMap<>();
+        dependencyGraph = new PackageDependencyGraph();
+        firePhaseChanged(null, Phase.READING);
 
         for (File contentPackage : contentPackages) {
             requireNonNull(contentPackage, "Null content-package can not be converted.");
@@ -136,11 +185,21 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
             if (!contentPackage.exists() || !contentPackage.isFile()) {
                 throw new IllegalArgumentException("File " + contentPackage + " does not exist or it is a directory");
             }
+        }
+
+        if (failFast && resourceFilter != null) {
+            ArchiveEntriesValidator validator = new ArchiveEntriesValidator(resourceFilter);
+            for (File contentPackage : contentPackages) {
+                logger.info("Validating content-package '{}' entries...", contentPackage);
+                validator.validate(contentPackage);
+            }
+        }
 
+        for (File contentPackage : contentPackages) {
             logger.info("Reading content-package '{}'...", contentPackage);
 
             VaultPackage pack = open(contentPackage);
-            idPackageMapping.put(pack.getId(), pack);
+            dependencyGraph.addPackage(pack);
 
             // analyze sub-content packages in order to filter out
             // possible outdated conflictring packages
@@ -149,15 +208,19 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
             logger.info("content-package '{}' successfully read!", contentPackage);
         }
 
-        logger.info("Ordering input content-package(s) {}...", idPackageMapping.keySet());
+        logger.info("Ordering input content-package(s) {}...", dependencyGraph.getPackageIds());
 
-        for (VaultPackage pack : idPackageMapping.values()) {
-            orderDependencies(idFileMap, idPackageMapping, pack, new HashSet<PackageId>());
-        }
+        List<VaultPackage> orderedContentPackages = dependencyGraph.getOrderedPackages();
 
-        logger.info("New content-package(s) order: {}", idFileMap.keySet());
+        if (logger.isInfoEnabled()) {
+            List<PackageId> orderedIds = new ArrayList<>(orderedContentPackages.size());
+            for (VaultPackage orderedContentPackage : orderedContentPackages) {
+                orderedIds.add(orderedContentPackage.getId());
+            }
+            logger.info("New content-package(s) order: {}", orderedIds);
+        }
 
-        return idFileMap.values();
+        return orderedContentPackages;
     }
 
     protected void secondPass(Collection<VaultPackage> orderedContentPackages) throws Exception {
@@ -187,10 +250,15 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
                 featuresManager.init(group, name, version);
 
                 logger.info("Converting content-package '{}'...", vaultPackage.getId());
+                firePhaseChanged(vaultPackage, Phase.CONVERTING);
 
+                handledEntries.clear();
                 traverse(vaultPackage);
 
+                logger.info("Content-package '{}' entries handled by {}", vaultPackage.getId(), handledEntries);
+
                 // attach all unmatched resources as new content-package
+                firePhaseChanged(vaultPackage, Phase.ASSEMBLING);
 
                 File contentPackageArchive = mainPackageAssembler.createPackage();
 
@@ -215,11 +283,16 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
                 aclManager.addRepoinitExtension(mainPackageAssembler, featuresManager.getTargetFeature());
 
                 logger.info("Conversion complete!");
+                firePhaseChanged(vaultPackage, Phase.SERIALIZING);
 
                 featuresManager.serialize();
             } finally {
                 aclManager.reset();
 
+                if (mainPackageAssembler != null) {
+                    mainPackageAssembler.cleanup();
+                }
+
                 try {
                     vaultPackage.close();
                 } catch (Exception e) {
@@ -229,25 +302,10 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
         }
     }
 
-    private void orderDependencies(Map<PackageId, VaultPackage> idFileMap,
-                                   Map<PackageId, VaultPackage> idPackageMapping,
-                                   VaultPackage pack,
-                                   Set<PackageId> visited) throws CyclicDependencyException {
-        if (!visited.add(pack.getId())) {
-            throw new CyclicDependencyException("Cyclic dependency detected, " + pack.getId() + " was previously visited already");
-        }
-
-        for (Dependency dep : pack.getDependencies()) {
-            for (java.util.Map.Entry<PackageId, VaultPackage> entry : idPackageMapping.entrySet()) {
-                if (dep.matches(entry.getKey())) {
-                    orderDependencies(idFileMap, idPackageMapping, entry.getValue(), visited);
-                    break;
-                }
-            }
+    private void firePhaseChanged(VaultPackage vaultPackage, Phase phase) {
+        if (progressListener != null) {
+            progressListener.onProgress(ProgressEvent.phaseChanged(vaultPackage != null ? String.valueOf(vaultPackage.getId()) : null, phase));
         }
-
-        idFileMap.put(pack.getId(), pack);
-        idPackageMapping.remove(pack.getId());
     }
 
     public void processSubPackage(String path, VaultPackage vaultPackage) throws Exception {
@@ -266,22 +324,67 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
         mainPackageAssembler.mergeFilters(vaultPackage.getMetaInf().getFilter());
 
         // add the metadata-only package one to the main package with overriden filter
-        File clonedPackage = VaultPackageAssembler.createSynthetic(vaultPackage);
-        mainPackageAssembler.addEntry(path, clonedPackage);
+        byte[] clonedPackage = getSyntheticPackage(vaultPackage);
+        mainPackageAssembler.addEntry(path, new ByteArrayInputStream(clonedPackage));
+    }
+
+    byte[] getSyntheticPackage(VaultPackage vaultPackage) throws Exception {
+        byte[] syntheticPackage = syntheticPackages.get(vaultPackage.getId());
+        if (syntheticPackage == null) {
+            syntheticPackage = VaultPackageAssembler.createSynthetic(vaultPackage);
+            syntheticPackages.put(vaultPackage.getId(), syntheticPackage);
+        }
+        return syntheticPackage;
+    }
+
+    public boolean isSubContentPackageIncluded(String path) {
+        return subContentPackagesResolver.isIncluded(path);
+    }
+
+    @Override
+    protected boolean onDirectory(String entryPath, Archive archive, Entry entry) throws Exception {
+        if (resourceFilter != null && resourceFilter.isSubtreeFilteredOut(entryPath)) {
+            // fail fast on the first file, without visiting and converting the rest of the subtree
+            String filePath = findFirstFile(entryPath, entry);
+            if (filePath != null) {
+                throw newNotAllowedPathException(filePath, archive);
+            }
+
+            // only empty directories, nothing to convert there
+            return false;
+        }
+
+        return true;
+    }
+
+    private static String findFirstFile(String path, Entry entry) {
+        for (Entry child : entry.getChildren()) {
+            String childPath = path + '/' + child.getName();
+
+            if (!child.isDirectory()) {
+                return childPath;
+            }
+
+            String filePath = findFirstFile(childPath, child);
+            if (filePath != null) {
+                return filePath;
+            }
+        }
+        return null;
     }
 
-    protected boolean isSubContentPackageIncluded(String path) {
-        return subContentPackages.containsValue(path);
+    private static IllegalArgumentException newNotAllowedPathException(String entryPath, Archive archive) throws Exception {
+        return new IllegalArgumentException("Path '"
+                                            + entryPath
+                                            + "' in archive "
+                                            + archive.getMetaInf().getProperties()
+                                            + " not allowed by user configuration, please check configured filtering patterns");
     }
 
     @Override
     protected void onFile(String entryPath, Archive archive, Entry entry) throws Exception {
         if (resourceFilter != null && resourceFilter.isFilteredOut(entryPath)) {
-            throw new IllegalArgumentException("Path '"
-                                               + entryPath
-                                               + "' in archive "
-                                               + archive.getMetaInf().getProperties()
-                                               + " not allowed by user configuration, please check configured filtering patterns");
+            throw newNotAllowedPathException(entryPath, archive);
         }
 
         EntryHandler entryHandler = handlersManager.getEntryHandlerByEntryPath(entryPath);
@@ -290,6 +393,8 @@ public class ContentPackage2FeatureModelConverter extends BaseVaultPackageScanne
         }
 
         entryHandler.handle(entryPath, archive, entry, this);
+
+        handledEntries.merge(entryHandler.getClass().getSimpleName(), 1, Integer::sum);
     }
 
     @Override
@@ -19,10 +19,10 @@ package org.apache.sling.feature.cpconverter.artifacts;
 import static java.util.Objects.requireNonNull;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.StringTokenizer;
 
+import org.apache.sling.feature.cpconverter.shared.AtomicFiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,9 +86,8 @@ public final class DefaultArtifactsDeployer implements ArtifactsDeployer {
 
         logger.info("Writing data to {}...", targetFile);
 
-        try (FileOutputStream targetStream = new FileOutputStream(targetFile)) {
-            artifactWriter.write(targetStream);
-        }
+        // jobs running in parallel may deploy the same artifact, readers never see a partially written file
+        AtomicFiles.write(targetFile.toPath(), artifactWriter::write);
 
         logger.info("Data successfully written to {}.", targetFile);
 
@@ -96,9 +95,7 @@ public final class DefaultArtifactsDeployer implements ArtifactsDeployer {
 
         targetFile = new File(targetDir, String.format("%s-%s.pom", artifactId, version));
 
-        try (FileOutputStream targetStream = new FileOutputStream(targetFile)) {
-            new MavenPomSupplierWriter(groupId, artifactId, version, type).write(targetStream);
-        }
+        AtomicFiles.write(targetFile.toPath(), new MavenPomSupplierWriter(groupId, artifactId, version, type)::write);
     }
 
 }
@@ -17,11 +17,11 @@
 package org.apache.sling.feature.cpconverter.artifacts;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.apache.sling.feature.cpconverter.shared.StreamUtils;
+
 public final class FileArtifactWriter implements ArtifactWriter {
 
     private final File fileArtifact;
@@ -32,9 +32,8 @@ public final class FileArtifactWriter implements ArtifactWriter {
 
     @Override
     public void write(OutputStream output) throws IOException {
-        try (InputStream input = new FileInputStream(fileArtifact)) {
-            new InputStreamArtifactWriter(input).write(output);
-        }
+        // FileChannel zero-copy transfer when writing to a file
+        StreamUtils.copy(fileArtifact, output);
     }
 
 }
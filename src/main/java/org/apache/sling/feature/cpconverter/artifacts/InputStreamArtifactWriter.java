@@ -20,7 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.sling.feature.cpconverter.shared.StreamUtils;
 
 public class InputStreamArtifactWriter implements ArtifactWriter {
 
@@ -32,7 +32,7 @@ public class InputStreamArtifactWriter implements ArtifactWriter {
 
     @Override
     public void write(OutputStream output) throws IOException {
-        IOUtils.copy(input, output);
+        StreamUtils.copy(input, output);
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Decouples log lines formatting from the (slow) console output: each flushed line is queued and written
+ * by a background thread, the caller is blocked only when the queue is full, so no line is ever dropped.
+ */
+final class AsyncLoggingOutputStream extends OutputStream {
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(256);
+
+    private final OutputStream target;
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    public AsyncLoggingOutputStream(OutputStream target) {
+        this.target = requireNonNull(target, "Null target stream can not be written asynchronously");
+        writer = new Thread(this::drain, "cp2fm-logging");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Redirects the standard error, where the simple logger writes, to a new asynchronous stream,
+     * which is drained when the JVM shuts down.
+     */
+    public static void install() {
+        final PrintStream stderr = System.err;
+        final AsyncLoggingOutputStream async = new AsyncLoggingOutputStream(stderr);
+        System.setErr(new PrintStream(async, false));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            async.close();
+            System.setErr(stderr);
+        }, "cp2fm-logging-shutdown"));
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        pending.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        pending.write(b, off, len);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+
+        byte[] chunk = pending.toByteArray();
+        pending.reset();
+
+        if (closed) {
+            // late writers, i.e. other shutdown hooks, go straight to the target
+            target.write(chunk);
+            target.flush();
+            return;
+        }
+
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            target.write(chunk);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                // nothing to do, the target is not available anymore
+            }
+            closed = true;
+        }
+
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            byte[] chunk;
+            while ((chunk = queue.take()) != END) {
+                try {
+                    target.write(chunk);
+                    // flush the target once the backlog is consumed only
+                    if (queue.isEmpty()) {
+                        target.flush();
+                    }
+                } catch (IOException e) {
+                    // keep consuming, producers must not be blocked by an unavailable target
+                }
+            }
+            target.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the target is not available anymore
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+
+/**
+ * Reads the conversion jobs from a JSON manifest, i.e.
+ *
+ * <pre>
+ * {
+ *   "defaults": {
+ *     "merge-configurations": true,
+ *     "filtering-patterns": [ "/jcr_root/apps/legacy/.*" ]
+ *   },
+ *   "jobs": [
+ *     {
+ *       "name": "my-app",
+ *       "content-packages": [ "my-app.all.zip" ],
+ *       "artifacts-output-directory": "target/artifacts",
+ *       "features-output-directory": "target/features"
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Keys match the single conversion launcher long options names; values in a job override the defaults ones,
+ * relative paths are resolved against the manifest directory.
+ */
+public final class BatchManifest {
+
+    private static final String DEFAULTS = "defaults";
+
+    private static final String JOBS = "jobs";
+
+    private static final String NAME = "name";
+
+    private static final String CONTENT_PACKAGES = "content-packages";
+
+    private static final String STRICT_VALIDATION = "strict-validation";
+
+    private static final String MERGE_CONFIGURATIONS = "merge-configurations";
+
+    private static final String BUNDLES_START_ORDER = "bundles-start-order";
+
+    private static final String FILTERING_PATTERNS = "filtering-patterns";
+
+    private static final String FAIL_FAST = "fail-fast";
+
+    private static final String LOW_MEMORY = "low-memory";
+
+    private static final String ARTIFACTS_OUTPUT_DIRECTORY = "artifacts-output-directory";
+
+    private static final String FEATURES_OUTPUT_DIRECTORY = "features-output-directory";
+
+    private static final String ARTIFACT_ID = "artifact-id";
+
+    private static final String DEPENDENCIES_GRAPH_FILE = "dependencies-graph-file";
+
+    private static final String DEFINE = "define";
+
+    /**
+     * This class can not be instantiated from outside
+     */
+    private BatchManifest() {
+        // do nothing
+    }
+
+    public static List<ConversionJob> read(File manifest) throws IOException {
+        requireNonNull(manifest, "Null manifest can not be read");
+
+        JsonObject root;
+        try (InputStream input = new FileInputStream(manifest);
+                Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+                JsonReader jsonReader = Json.createReader(reader)) {
+            root = jsonReader.readObject();
+        } catch (RuntimeException e) {
+            throw new IOException("Manifest " + manifest + " is not a valid JSON object: " + e.getMessage(), e);
+        }
+
+        File baseDirectory = manifest.getAbsoluteFile().getParentFile();
+        JsonObject defaults = root.containsKey(DEFAULTS) ? root.getJsonObject(DEFAULTS) : Json.createObjectBuilder().build();
+
+        if (!root.containsKey(JOBS) || root.get(JOBS).getValueType() != ValueType.ARRAY) {
+            throw new IOException("Manifest " + manifest + " does not contain the '" + JOBS + "' array");
+        }
+
+        List<ConversionJob> jobs = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        JsonArray jobsArray = root.getJsonArray(JOBS);
+
+        for (int i = 0; i < jobsArray.size(); i++) {
+            JsonObject job = jobsArray.getJsonObject(i);
+            String name = job.getString(NAME, "job-" + (i + 1));
+
+            if (!names.add(name)) {
+                throw new IOException("Manifest " + manifest + " contains more than one job named '" + name + "'");
+            }
+
+            try {
+                jobs.add(toJob(name, defaults, job, baseDirectory));
+            } catch (RuntimeException e) {
+                throw new IOException("Job '" + name + "' in manifest " + manifest + " is not valid: " + e.getMessage(), e);
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Reads a single job, without defaults.
+     */
+    static ConversionJob readJob(JsonObject job, String defaultName, File baseDirectory) {
+        return toJob(job.getString(NAME, defaultName), Json.createObjectBuilder().build(), job, baseDirectory);
+    }
+
+    private static ConversionJob toJob(String name, JsonObject defaults, JsonObject job, File baseDirectory) {
+        ConversionJob conversionJob = new ConversionJob(name)
+                                      .setStrictValidation(getBoolean(defaults, job, STRICT_VALIDATION))
+                                      .setMergeConfigurations(getBoolean(defaults, job, MERGE_CONFIGURATIONS))
+                                      .setFailFast(getBoolean(defaults, job, FAIL_FAST))
+                                      .setLowMemory(getBoolean(defaults, job, LOW_MEMORY))
+                                      .setArtifactsOutputDirectory(getFile(defaults, job, ARTIFACTS_OUTPUT_DIRECTORY, baseDirectory))
+                                      .setFeatureModelsOutputDirectory(getFile(defaults, job, FEATURES_OUTPUT_DIRECTORY, baseDirectory))
+                                      .setDependenciesGraphFile(getFile(defaults, job, DEPENDENCIES_GRAPH_FILE, baseDirectory));
+
+        JsonValue bundlesStartOrder = get(defaults, job, BUNDLES_START_ORDER);
+        if (bundlesStartOrder != null) {
+            conversionJob.setBundlesStartOrder(toInt(name, BUNDLES_START_ORDER, bundlesStartOrder));
+        }
+
+        JsonValue artifactId = get(defaults, job, ARTIFACT_ID);
+        if (artifactId != null) {
+            conversionJob.setArtifactIdOverride(((JsonString) artifactId).getString());
+        }
+
+        for (String contentPackage : getStrings(defaults, job, CONTENT_PACKAGES)) {
+            conversionJob.addContentPackages(resolve(baseDirectory, contentPackage));
+        }
+
+        for (String filteringPattern : getStrings(defaults, job, FILTERING_PATTERNS)) {
+            conversionJob.addFilteringPatterns(filteringPattern);
+        }
+
+        // defines are merged, not overridden
+        for (JsonObject source : new JsonObject[] { defaults, job }) {
+            if (source.containsKey(DEFINE)) {
+                for (Map.Entry<String, JsonValue> define : source.getJsonObject(DEFINE).entrySet()) {
+                    String value = define.getValue() instanceof JsonString
+                                   ? ((JsonString) define.getValue()).getString()
+                                   : define.getValue().toString();
+                    conversionJob.addProperties(Collections.singletonMap(define.getKey(), value));
+                }
+            }
+        }
+
+        return conversionJob;
+    }
+
+    private static JsonValue get(JsonObject defaults, JsonObject job, String key) {
+        JsonValue value = job.containsKey(key) ? job.get(key) : defaults.get(key);
+        return value == null || value.getValueType() == ValueType.NULL ? null : value;
+    }
+
+    private static boolean getBoolean(JsonObject defaults, JsonObject job, String key) {
+        return JsonValue.TRUE.equals(get(defaults, job, key));
+    }
+
+    private static int toInt(String name, String key, JsonValue value) {
+        switch (value.getValueType()) {
+            case NUMBER:
+                return ((JsonNumber) value).intValue();
+
+            case STRING:
+                String string = ((JsonString) value).getString();
+                try {
+                    return Integer.parseInt(string.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("'" + key + "' of job '" + name + "' is not a valid integer: '" + string + "'", e);
+                }
+
+            default:
+                throw new IllegalArgumentException("'" + key + "' of job '" + name + "' has to be an integer, found " + value);
+        }
+    }
+
+    private static File getFile(JsonObject defaults, JsonObject job, String key, File baseDirectory) {
+        JsonValue value = get(defaults, job, key);
+        return value == null ? null : resolve(baseDirectory, ((JsonString) value).getString());
+    }
+
+    private static List<String> getStrings(JsonObject defaults, JsonObject job, String key) {
+        List<String> strings = new ArrayList<>();
+        JsonValue value = get(defaults, job, key);
+        if (value instanceof JsonString) {
+            strings.add(((JsonString) value).getString());
+        } else if (value instanceof JsonArray) {
+            for (JsonString string : ((JsonArray) value).getValuesAs(JsonString.class)) {
+                strings.add(string.getString());
+            }
+        }
+        return strings;
+    }
+
+    private static File resolve(File baseDirectory, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDirectory, path);
+    }
+
+}
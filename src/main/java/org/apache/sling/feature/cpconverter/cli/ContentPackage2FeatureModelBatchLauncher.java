@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static org.apache.sling.feature.cpconverter.cli.ContentPackage2FeatureModelConverterLauncher.configureLogging;
+import static org.apache.sling.feature.cpconverter.cli.ContentPackage2FeatureModelConverterLauncher.printVersion;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.sling.feature.cpconverter.handlers.ConfigurationsCache;
+import org.apache.sling.feature.cpconverter.handlers.DefaultConfigurationsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+@Command(
+    name = "cp2fm-batch",
+    description = "Apache Sling Content Package to Sling Feature batch converter",
+    footer = "Copyright(c) 2019 The Apache Software Foundation."
+)
+public final class ContentPackage2FeatureModelBatchLauncher implements Runnable {
+
+    @Option(names = { "-h", "--help" }, usageHelp = true, description = "Display the usage message.")
+    private boolean helpRequested;
+
+    @Option(names = { "-X", "--verbose" }, description = "Produce execution debug output.")
+    private boolean debug;
+
+    @Option(names = { "-q", "--quiet" }, description = "Log errors only.")
+    private boolean quiet;
+
+    @Option(names = { "-v", "--version" }, description = "Display version information.")
+    private boolean printVersion;
+
+    @Option(names = { "--async-logging" }, description = "Write log lines from a background thread, reduces the verbose output overhead.", required = false, defaultValue = "false")
+    private boolean asyncLogging;
+
+    @Option(names = { "-j", "--jobs" }, description = "The number of conversion jobs executed in parallel, the number of available processors by default.", required = false)
+    private int parallelJobs = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "-c", "--configurations-cache-directory" }, description = "The optional directory where parsed OSGi configurations are stored, in order to be reused across multiple executions; configurations are not cached, if not specified.", required = false)
+    private File configurationsCacheDirectory;
+
+    @Parameters(arity = "1", paramLabel = "manifest", description = "The JSON manifest file listing the conversion jobs.")
+    private File manifest;
+
+    @Override
+    public void run() {
+        configureLogging(quiet, debug, true, asyncLogging);
+
+        String appName = getClass().getAnnotation(Command.class).description()[0];
+        final Logger logger = LoggerFactory.getLogger(appName);
+
+        Runtime.getRuntime().addShutdownHook(new ShutDownHook(logger));
+
+        if (printVersion) {
+            printVersion(logger);
+        }
+
+        logger.info(appName);
+        logger.info("");
+
+        List<JobResult> results;
+        try {
+            results = execute(BatchManifest.read(manifest), logger);
+        } catch (Throwable t) {
+            if (debug) {
+                logger.error("Unable to execute conversion jobs listed in {}:", manifest, t);
+            } else {
+                logger.error("Unable to execute conversion jobs listed in {}: {}", manifest, t.getMessage());
+            }
+            System.exit(1);
+            return;
+        }
+
+        boolean failed = false;
+
+        logger.info("+-----------------------------------------------------+");
+        logger.info("{} summary:", appName);
+        logger.info("+-----------------------------------------------------+");
+        for (JobResult result : results) {
+            logger.info("{} {} [{} s]",
+                        result.job.getName(),
+                        result.error == null ? "SUCCESS" : "FAILURE",
+                        String.format("%.3f", result.duration / 1000D));
+            failed |= result.error != null;
+        }
+        logger.info("+-----------------------------------------------------+");
+        logger.info("{} {}", appName, failed ? "FAILURE" : "SUCCESS");
+        logger.info("+-----------------------------------------------------+");
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private List<JobResult> execute(List<ConversionJob> jobs, Logger logger) throws Exception {
+        if (parallelJobs < 1) {
+            throw new IllegalArgumentException("At least 1 conversion job has to be executed in parallel, " + parallelJobs + " is not valid");
+        }
+
+        // shared by all jobs, it is thread-safe
+        ConfigurationsCache configurationsCache = configurationsCacheDirectory != null ? new DefaultConfigurationsCache(configurationsCacheDirectory) : null;
+
+        logger.info("Executing {} conversion job(s) on {} thread(s)...", jobs.size(), parallelJobs);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelJobs, Math.max(1, jobs.size())),
+                                                                new NamedThreadFactory("cp2fm-job-"));
+        try {
+            List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+            for (ConversionJob job : jobs) {
+                futures.add(executor.submit(() -> execute(job, configurationsCache, logger)));
+            }
+
+            List<JobResult> results = new ArrayList<>(futures.size());
+            for (Future<JobResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private JobResult execute(ConversionJob job, ConfigurationsCache configurationsCache, Logger logger) {
+        logger.info("Conversion job '{}' of {} started", job.getName(), job.getContentPackages());
+
+        long start = System.currentTimeMillis();
+        Throwable error = null;
+        try {
+            job.run(configurationsCache);
+
+            logger.info("Conversion job '{}' successfully completed", job.getName());
+        } catch (Throwable t) {
+            error = t;
+
+            if (debug) {
+                logger.error("Conversion job '{}' failed:", job.getName(), t);
+            } else {
+                logger.error("Conversion job '{}' failed: {}", job.getName(), t.getMessage());
+            }
+        }
+        return new JobResult(job, System.currentTimeMillis() - start, error);
+    }
+
+    public static void main(String[] args) {
+        CommandLine.run(new ContentPackage2FeatureModelBatchLauncher(), args);
+    }
+
+    private static final class JobResult {
+
+        private final ConversionJob job;
+
+        private final long duration;
+
+        private final Throwable error;
+
+        JobResult(ConversionJob job, long duration, Throwable error) {
+            this.job = job;
+            this.duration = duration;
+            this.error = error;
+        }
+
+    }
+
+}
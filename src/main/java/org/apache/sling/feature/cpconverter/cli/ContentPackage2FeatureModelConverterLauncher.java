@@ -17,16 +17,19 @@
 package org.apache.sling.feature.cpconverter.cli;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
 
-import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
-import org.apache.sling.feature.cpconverter.acl.DefaultAclManager;
-import org.apache.sling.feature.cpconverter.artifacts.DefaultArtifactsDeployer;
-import org.apache.sling.feature.cpconverter.features.DefaultFeaturesManager;
-import org.apache.sling.feature.cpconverter.filtering.RegexBasedResourceFilter;
-import org.apache.sling.feature.cpconverter.handlers.DefaultEntryHandlersManager;
+import org.apache.sling.feature.cpconverter.handlers.DefaultConfigurationsCache;
+import org.apache.sling.feature.cpconverter.progress.ConsoleProgressBar;
+import org.apache.sling.feature.cpconverter.progress.NdjsonProgressListener;
+import org.apache.sling.feature.cpconverter.progress.ProgressListener;
+import org.apache.sling.feature.cpconverter.progress.RateLimitedProgressListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +57,9 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
     @Option(names = { "-v", "--version" }, description = "Display version information.")
     private boolean printVersion;
 
+    @Option(names = { "--async-logging" }, description = "Write log lines from a background thread, reduces the verbose output overhead.", required = false, defaultValue = "false")
+    private boolean asyncLogging;
+
     @Option(names = { "-s", "--strict-validation" }, description = "Flag to mark the content-package input file being strict validated.", required = false, defaultValue = "false")
     private boolean strictValidation = false;
 
@@ -63,9 +69,15 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
     @Option(names = { "-b", "--bundles-start-order" }, description = "The order to start detected bundles.", required = false)
     private int bundlesStartOrder = 0;
 
-    @Option(names = { "-f", "--filtering-patterns" }, description = "Regex based pattern(s) to reject content-package archive entries.", required = false)
+    @Option(names = { "-f", "--filtering-patterns" }, description = "Pattern(s) to reject content-package archive entries: regexes, unless marked as path prefixes (prefix:/jcr_root/apps/legacy/) or globs (glob:/jcr_root/**/*.zip).", required = false)
     private String[] filteringPatterns;
 
+    @Option(names = { "-F", "--fail-fast" }, description = "Flag to validate all the content-package archive entries names against the filtering patterns, before starting the conversion.", required = false, defaultValue = "false")
+    private boolean failFast;
+
+    @Option(names = { "-l", "--low-memory" }, description = "Flag to store the OSGi configurations on disk, instead of in memory, until the Feature Files are generated.", required = false, defaultValue = "false")
+    private boolean lowMemory;
+
     @Option(names = { "-a", "--artifacts-output-directory" }, description = "The output directory where the artifacts will be deployed.", required = true)
     private File artifactsOutputDirectory;
 
@@ -75,6 +87,18 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
     @Option(names = { "-i", "--artifact-id" }, description = "The optional Artifact Id the Feature File will have, once generated; it will be derived, if not specified.", required = false)
     private String artifactIdOverride;
 
+    @Option(names = { "-c", "--configurations-cache-directory" }, description = "The optional directory where parsed OSGi configurations are stored, in order to be reused across multiple executions; configurations are not cached, if not specified.", required = false)
+    private File configurationsCacheDirectory;
+
+    @Option(names = { "-g", "--dependencies-graph-file" }, description = "The optional file where the input content-packages dependency graph will be exported, in JSON format if the file name ends with '.json', DOT format otherwise.", required = false)
+    private File dependenciesGraphFile;
+
+    @Option(names = { "--progress" }, description = "The optional progress report: 'console' renders a progress bar, 'ndjson' streams one JSON event per line.", required = false)
+    private ProgressFormat progressFormat;
+
+    @Option(names = { "--progress-file" }, description = "The optional file where 'ndjson' progress events are streamed, standard output otherwise.", required = false)
+    private File progressFile;
+
     @Option(names = {"-D", "--define"}, description = "Define a system property", required = false)
     private Map<String, String> properties = new HashMap<>();
 
@@ -83,16 +107,7 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
 
     @Override
     public void run() {
-        if (quiet) {
-            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "error");
-        } else if (debug) {
-            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "debug");
-        } else {
-            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "info");
-        }
-        System.setProperty("org.slf4j.simpleLogger.showThreadName", "false");
-        System.setProperty("org.slf4j.simpleLogger.levelInBrackets", "true");
-        System.setProperty("org.slf4j.simpleLogger.showLogName", "false");
+        configureLogging(quiet, debug, false, asyncLogging);
 
         String appName = getClass().getAnnotation(Command.class).description()[0];
         final Logger logger = LoggerFactory.getLogger(appName);
@@ -108,28 +123,43 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
         logger.info(appName);
         logger.info("");
 
+        Writer progressWriter = null;
         try {
-            ContentPackage2FeatureModelConverter converter = new ContentPackage2FeatureModelConverter(strictValidation)
-                                                             .setFeaturesManager(new DefaultFeaturesManager(mergeConfigurations,
-                                                                                                            bundlesStartOrder,
-                                                                                                            featureModelsOutputDirectory,
-                                                                                                            artifactIdOverride,
-                                                                                                            properties))
-                                                             .setBundlesDeployer(new DefaultArtifactsDeployer(artifactsOutputDirectory))
-                                                             .setEntryHandlersManager(new DefaultEntryHandlersManager())
-                                                             .setAclManager(new DefaultAclManager());
-
-            if (filteringPatterns != null && filteringPatterns.length > 0) {
-                RegexBasedResourceFilter filter = new RegexBasedResourceFilter();
-
-                for (String filteringPattern : filteringPatterns) {
-                    filter.addFilteringPattern(filteringPattern);
-                }
+            ConversionJob job = new ConversionJob(appName)
+                                .addContentPackages(contentPackages)
+                                .setStrictValidation(strictValidation)
+                                .setMergeConfigurations(mergeConfigurations)
+                                .setBundlesStartOrder(bundlesStartOrder)
+                                .setFailFast(failFast)
+                                .setLowMemory(lowMemory)
+                                .setArtifactsOutputDirectory(artifactsOutputDirectory)
+                                .setFeatureModelsOutputDirectory(featureModelsOutputDirectory)
+                                .setArtifactIdOverride(artifactIdOverride)
+                                .setDependenciesGraphFile(dependenciesGraphFile)
+                                .addProperties(properties);
+
+            if (filteringPatterns != null) {
+                job.addFilteringPatterns(filteringPatterns);
+            }
 
-                converter.setResourceFilter(filter);
+            if (progressFormat != null) {
+                ProgressListener progressListener;
+                switch (progressFormat) {
+                    case ndjson:
+                        progressWriter = progressFile != null
+                                         ? new OutputStreamWriter(new FileOutputStream(progressFile), StandardCharsets.UTF_8)
+                                         : new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                        progressListener = new RateLimitedProgressListener(new NdjsonProgressListener(progressWriter), 500);
+                        break;
+
+                    default:
+                        progressListener = new RateLimitedProgressListener(new ConsoleProgressBar(System.out), 200);
+                        break;
+                }
+                job.setProgressListener(progressListener);
             }
 
-            converter.convert(contentPackages);
+            job.run(configurationsCacheDirectory != null ? new DefaultConfigurationsCache(configurationsCacheDirectory) : null);
 
             logger.info( "+-----------------------------------------------------+" );
             logger.info("{} SUCCESS", appName);
@@ -147,10 +177,44 @@ public final class ContentPackage2FeatureModelConverterLauncher implements Runna
             logger.info( "+-----------------------------------------------------+" );
 
             System.exit(1);
+        } finally {
+            if (progressWriter != null && progressFile != null) {
+                try {
+                    progressWriter.close();
+                } catch (Exception e) {
+                    logger.warn("Impossible to close the progress file {}: {}", progressFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private enum ProgressFormat {
+
+        console,
+
+        ndjson
+
+    }
+
+    static void configureLogging(boolean quiet, boolean debug, boolean showThreadName, boolean asyncLogging) {
+        if (quiet) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "error");
+        } else if (debug) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "debug");
+        } else {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "info");
+        }
+        System.setProperty("org.slf4j.simpleLogger.showThreadName", String.valueOf(showThreadName));
+        System.setProperty("org.slf4j.simpleLogger.levelInBrackets", "true");
+        System.setProperty("org.slf4j.simpleLogger.showLogName", "false");
+
+        if (asyncLogging) {
+            // the simple logger looks System.err up on each line, so it has to be replaced before logging starts
+            AsyncLoggingOutputStream.install();
         }
     }
 
-    private static void printVersion(final Logger logger) {
+    static void printVersion(final Logger logger) {
         logger.info("{} v{} (built on {})",
                 System.getProperty("project.artifactId"),
                 System.getProperty("project.version"),
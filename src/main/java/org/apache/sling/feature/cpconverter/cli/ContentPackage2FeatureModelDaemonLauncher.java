@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static org.apache.sling.feature.cpconverter.cli.ContentPackage2FeatureModelConverterLauncher.configureLogging;
+import static org.apache.sling.feature.cpconverter.cli.ContentPackage2FeatureModelConverterLauncher.printVersion;
+
+import java.io.File;
+
+import org.apache.sling.feature.cpconverter.handlers.DefaultConfigurationsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "cp2fm-daemon",
+    description = "Apache Sling Content Package to Sling Feature converter daemon",
+    footer = "Copyright(c) 2019 The Apache Software Foundation."
+)
+public final class ContentPackage2FeatureModelDaemonLauncher implements Runnable {
+
+    @Option(names = { "-h", "--help" }, usageHelp = true, description = "Display the usage message.")
+    private boolean helpRequested;
+
+    @Option(names = { "-X", "--verbose" }, description = "Produce execution debug output.")
+    private boolean debug;
+
+    @Option(names = { "-q", "--quiet" }, description = "Log errors only.")
+    private boolean quiet;
+
+    @Option(names = { "-v", "--version" }, description = "Display version information.")
+    private boolean printVersion;
+
+    @Option(names = { "--async-logging" }, description = "Write log lines from a background thread, reduces the verbose output overhead.", required = false, defaultValue = "false")
+    private boolean asyncLogging;
+
+    @Option(names = { "-p", "--port" }, description = "The localhost port the daemon listens to, 8686 by default.", required = false)
+    private int port = 8686;
+
+    @Option(names = { "-j", "--jobs" }, description = "The number of conversion jobs executed in parallel, the number of available processors by default.", required = false)
+    private int parallelJobs = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "-c", "--configurations-cache-directory" }, description = "The optional directory where parsed OSGi configurations are stored, in order to be reused across multiple executions; configurations are not cached, if not specified.", required = false)
+    private File configurationsCacheDirectory;
+
+    @Option(names = { "-t", "--token-file" }, description = "The file where the token required by each request is stored, readable by the owner only; ~/.cp2fm-daemon-<port>.token by default.", required = false)
+    private File tokenFile;
+
+    @Override
+    public void run() {
+        configureLogging(quiet, debug, true, asyncLogging);
+
+        String appName = getClass().getAnnotation(Command.class).description()[0];
+        final Logger logger = LoggerFactory.getLogger(appName);
+
+        if (printVersion) {
+            printVersion(logger);
+        }
+
+        logger.info(appName);
+        logger.info("");
+
+        if (tokenFile == null) {
+            // daemons listening on different ports do not replace each other's token
+            tokenFile = new File(System.getProperty("user.home"), ".cp2fm-daemon-" + port + ".token");
+        }
+
+        try {
+            ConversionDaemon daemon = new ConversionDaemon(port,
+                                                           parallelJobs,
+                                                           configurationsCacheDirectory != null ? new DefaultConfigurationsCache(configurationsCacheDirectory) : null,
+                                                           tokenFile);
+            daemon.start();
+            daemon.awaitTermination();
+        } catch (Throwable t) {
+            if (debug) {
+                logger.error("Unable to run the conversion daemon:", t);
+            } else {
+                logger.error("Unable to run the conversion daemon: {}", t.getMessage());
+            }
+            System.exit(1);
+        }
+    }
+
+    public static void main(String[] args) {
+        CommandLine.run(new ContentPackage2FeatureModelDaemonLauncher(), args);
+    }
+
+}
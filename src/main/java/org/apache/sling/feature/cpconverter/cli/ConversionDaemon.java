@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+
+import org.apache.sling.feature.cpconverter.handlers.ConfigurationsCache;
+import org.apache.sling.feature.cpconverter.progress.NdjsonProgressListener;
+import org.apache.sling.feature.cpconverter.progress.RateLimitedProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Keeps a warm JVM serving conversion requests over a loopback-only HTTP endpoint:
+ * <ul>
+ * <li><code>POST /convert</code> accepts a single job, in the same JSON format of the batch manifest jobs, and streams
+ * back the job events as newline-delimited JSON;</li>
+ * <li><code>GET /status</code> reports the running and completed jobs counters;</li>
+ * <li><code>POST /shutdown</code> stops the daemon, once the running jobs are completed.</li>
+ * </ul>
+ *
+ * Every request has to carry the token generated at startup, readable by the owner only in the token file, as
+ * <code>Authorization: Bearer</code> header; POST requests have to be <code>application/json</code>, requests sent
+ * by browsers (with an <code>Origin</code> header) or addressed to a non-loopback host are rejected.
+ */
+public final class ConversionDaemon {
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private static final String BEARER = "Bearer ";
+
+    private static final int TOKEN_SIZE = 32;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AtomicInteger jobsCounter = new AtomicInteger();
+
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    private final AtomicInteger failedJobs = new AtomicInteger();
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final ConfigurationsCache configurationsCache;
+
+    private final ExecutorService workers;
+
+    private final ExecutorService requestsExecutor;
+
+    private final HttpServer server;
+
+    private final File tokenFile;
+
+    private final byte[] token;
+
+    public ConversionDaemon(int port, int parallelJobs, ConfigurationsCache configurationsCache, File tokenFile) throws IOException {
+        if (parallelJobs < 1) {
+            throw new IllegalArgumentException("At least 1 conversion job has to be executed in parallel, " + parallelJobs + " is not valid");
+        }
+        if (tokenFile == null) {
+            throw new IllegalArgumentException("The daemon token file has to be specified");
+        }
+
+        this.configurationsCache = configurationsCache;
+        this.tokenFile = tokenFile;
+        token = newToken();
+        workers = Executors.newFixedThreadPool(parallelJobs, new NamedThreadFactory("cp2fm-worker-"));
+        requestsExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("cp2fm-request-"));
+
+        // local use only, never exposed to the network
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requestsExecutor);
+        Filter guard = new RequestsGuard();
+        server.createContext("/convert", new ConvertHandler()).getFilters().add(guard);
+        server.createContext("/status", new StatusHandler()).getFilters().add(guard);
+        server.createContext("/shutdown", new ShutdownHandler()).getFilters().add(guard);
+    }
+
+    public void start() throws IOException {
+        writeToken(tokenFile.toPath(), token);
+        server.start();
+        logger.info("Conversion daemon listening on http://{}:{}/, access token stored in {}", server.getAddress().getHostString(), getPort(), tokenFile);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    public void stop() {
+        logger.info("Stopping the conversion daemon...");
+
+        // no more jobs accepted, the running ones are completed and their events delivered
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        server.stop(1);
+        requestsExecutor.shutdownNow();
+
+        if (!tokenFile.delete()) {
+            logger.warn("Token file {} could not be deleted", tokenFile);
+        }
+
+        terminated.countDown();
+
+        logger.info("Conversion daemon stopped");
+    }
+
+    private static byte[] newToken() {
+        byte[] random = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(random);
+
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void writeToken(Path tokenFile, byte[] token) throws IOException {
+        // never reuse an existing file, its permissions may be wider
+        Files.deleteIfExists(tokenFile);
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            File file = Files.createFile(tokenFile).toFile();
+            if (!(file.setReadable(false, false) && file.setReadable(true, true)
+                    && file.setWritable(false, false) && file.setWritable(true, true))) {
+                Files.delete(tokenFile);
+                throw new IOException("Impossible to restrict the token file " + tokenFile + " access to the owner only");
+            }
+        }
+
+        Files.write(tokenFile, token);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonObject json) throws IOException {
+        byte[] response = (json.toString() + '\n').getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private static JsonObject message(String message) {
+        return Json.createObjectBuilder().add("message", message).build();
+    }
+
+    private final class RequestsGuard extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            // browsers always send it, other clients do not
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                reject(exchange, 403, "Cross-origin requests are not accepted");
+                return;
+            }
+
+            // protects against DNS rebinding
+            if (!isLoopback(exchange.getRequestHeaders().getFirst("Host"))) {
+                reject(exchange, 403, "Only requests addressed to a loopback host are accepted");
+                return;
+            }
+
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null
+                    || !authorization.startsWith(BEARER)
+                    || !MessageDigest.isEqual(token, authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.US_ASCII))) {
+                reject(exchange, 401, "The token stored in " + tokenFile + " is required");
+                return;
+            }
+
+            if ("POST".equals(exchange.getRequestMethod()) && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                reject(exchange, 415, "Only " + JSON_CONTENT_TYPE + " requests are accepted");
+                return;
+            }
+
+            chain.doFilter(exchange);
+        }
+
+        private void reject(HttpExchange exchange, int status, String reason) throws IOException {
+            try {
+                logger.warn("Request {} {} rejected: {}", exchange.getRequestMethod(), exchange.getRequestURI(), reason);
+                sendJson(exchange, status, message(reason));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private boolean isLoopback(String host) {
+            if (host == null) {
+                return false;
+            }
+
+            String hostName = host;
+            if (hostName.startsWith("[")) {
+                int end = hostName.indexOf(']');
+                if (end == -1) {
+                    return false;
+                }
+                hostName = hostName.substring(1, end);
+            } else if (hostName.indexOf(':') != -1) {
+                hostName = hostName.substring(0, hostName.indexOf(':'));
+            }
+
+            return "localhost".equalsIgnoreCase(hostName)
+                   || "127.0.0.1".equals(hostName)
+                   || "::1".equals(hostName)
+                   || "0:0:0:0:0:0:0:1".equals(hostName);
+        }
+
+        private boolean isJson(String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+
+            int parameters = contentType.indexOf(';');
+            String mediaType = parameters == -1 ? contentType : contentType.substring(0, parameters);
+            return JSON_CONTENT_TYPE.equalsIgnoreCase(mediaType.trim());
+        }
+
+        @Override
+        public String description() {
+            return "Rejects unauthorized and cross-origin requests";
+        }
+
+    }
+
+    private final class ConvertHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendJson(exchange, 405, message("Only POST requests are accepted"));
+                    return;
+                }
+
+                if (workers.isShutdown()) {
+                    sendJson(exchange, 503, message("The daemon is shutting down, no more jobs are accepted"));
+                    return;
+                }
+
+                int jobId = jobsCounter.incrementAndGet();
+
+                ConversionJob job;
+                try (InputStream input = exchange.getRequestBody();
+                        JsonReader reader = Json.createReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                    // relative paths are resolved against the daemon working directory
+                    job = BatchManifest.readJob(reader.readObject(), "job-" + jobId, new File("").getAbsoluteFile());
+                } catch (RuntimeException e) {
+                    sendJson(exchange, 400, message("Invalid conversion job: " + e.getMessage()));
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", NDJSON_CONTENT_TYPE);
+                // chunked, events are streamed as soon as they happen
+                exchange.sendResponseHeaders(200, 0);
+
+                try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                    EventsWriter events = new EventsWriter(writer, job);
+                    events.write("queued");
+
+                    job.setProgressListener(new RateLimitedProgressListener(event -> events.write(NdjsonProgressListener.toJson(event).add("event", "progress")), 500));
+
+                    Future<?> execution;
+                    try {
+                        execution = workers.submit(() -> execute(job, events));
+                    } catch (RejectedExecutionException e) {
+                        // shut down after the check above
+                        events.write(Json.createObjectBuilder()
+                                         .add("event", "failed")
+                                         .add("duration", 0)
+                                         .add("error", "The daemon is shutting down, the job was not executed"));
+                        return;
+                    }
+                    execution.get();
+                } catch (Exception e) {
+                    logger.error("Conversion job '{}' could not be executed: {}", job.getName(), e.getMessage());
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void execute(ConversionJob job, EventsWriter events) {
+            runningJobs.incrementAndGet();
+            long start = System.currentTimeMillis();
+            try {
+                events.write("started");
+
+                logger.info("Conversion job '{}' of {} started", job.getName(), job.getContentPackages());
+                job.run(configurationsCache);
+                logger.info("Conversion job '{}' successfully completed", job.getName());
+
+                events.write(Json.createObjectBuilder()
+                                 .add("event", "succeeded")
+                                 .add("duration", System.currentTimeMillis() - start));
+            } catch (Throwable t) {
+                failedJobs.incrementAndGet();
+                logger.error("Conversion job '{}' failed: {}", job.getName(), t.getMessage());
+
+                events.write(Json.createObjectBuilder()
+                                 .add("event", "failed")
+                                 .add("duration", System.currentTimeMillis() - start)
+                                 .add("error", String.valueOf(t.getMessage())));
+            } finally {
+                runningJobs.decrementAndGet();
+            }
+        }
+
+    }
+
+    private final class StatusHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                sendJson(exchange, 200, Json.createObjectBuilder()
+                                            .add("jobs", jobsCounter.get())
+                                            .add("running", runningJobs.get())
+                                            .add("failed", failedJobs.get())
+                                            .build());
+            } finally {
+                exchange.close();
+            }
+        }
+
+    }
+
+    private final class ShutdownHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendJson(exchange, 405, message("Only POST requests are accepted"));
+                    return;
+                }
+
+                sendJson(exchange, 202, message("Shutting down"));
+            } finally {
+                exchange.close();
+            }
+
+            // can not be stopped by one of its own request threads
+            Thread stopper = new Thread(ConversionDaemon.this::stop, "cp2fm-shutdown");
+            stopper.start();
+        }
+
+    }
+
+    private static final class EventsWriter {
+
+        private final Writer writer;
+
+        private final ConversionJob job;
+
+        EventsWriter(Writer writer, ConversionJob job) {
+            this.writer = writer;
+            this.job = job;
+        }
+
+        void write(String event) {
+            write(Json.createObjectBuilder().add("event", event));
+        }
+
+        synchronized void write(JsonObjectBuilder event) {
+            try {
+                writer.write(event.add("job", job.getName()).build().toString());
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                // the client went away, the conversion goes on anyway
+            }
+        }
+
+    }
+
+}
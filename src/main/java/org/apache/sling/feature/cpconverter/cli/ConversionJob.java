@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
+import org.apache.sling.feature.cpconverter.acl.DefaultAclManager;
+import org.apache.sling.feature.cpconverter.artifacts.DefaultArtifactsDeployer;
+import org.apache.sling.feature.cpconverter.features.DefaultFeaturesManager;
+import org.apache.sling.feature.cpconverter.filtering.RuleBasedResourceFilter;
+import org.apache.sling.feature.cpconverter.handlers.ConfigurationsCache;
+import org.apache.sling.feature.cpconverter.handlers.DefaultEntryHandlersManager;
+import org.apache.sling.feature.cpconverter.progress.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single, self-contained, conversion: the input content-packages plus all the converter options.
+ */
+public final class ConversionJob {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+
+    private final List<File> contentPackages = new ArrayList<>();
+
+    private final List<String> filteringPatterns = new ArrayList<>();
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    private boolean strictValidation = false;
+
+    private boolean mergeConfigurations = false;
+
+    private int bundlesStartOrder = 0;
+
+    private boolean failFast = false;
+
+    private boolean lowMemory = false;
+
+    private File artifactsOutputDirectory;
+
+    private File featureModelsOutputDirectory;
+
+    private String artifactIdOverride;
+
+    private File dependenciesGraphFile;
+
+    private ProgressListener progressListener;
+
+    public ConversionJob(String name) {
+        this.name = requireNonNull(name, "Null name is not a valid conversion job name");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<File> getContentPackages() {
+        return contentPackages;
+    }
+
+    public ConversionJob addContentPackages(File...contentPackages) {
+        this.contentPackages.addAll(Arrays.asList(contentPackages));
+        return this;
+    }
+
+    public ConversionJob addFilteringPatterns(String...filteringPatterns) {
+        this.filteringPatterns.addAll(Arrays.asList(filteringPatterns));
+        return this;
+    }
+
+    public ConversionJob addProperties(Map<String, String> properties) {
+        this.properties.putAll(properties);
+        return this;
+    }
+
+    public ConversionJob setStrictValidation(boolean strictValidation) {
+        this.strictValidation = strictValidation;
+        return this;
+    }
+
+    public ConversionJob setMergeConfigurations(boolean mergeConfigurations) {
+        this.mergeConfigurations = mergeConfigurations;
+        return this;
+    }
+
+    public int getBundlesStartOrder() {
+        return bundlesStartOrder;
+    }
+
+    public ConversionJob setBundlesStartOrder(int bundlesStartOrder) {
+        this.bundlesStartOrder = bundlesStartOrder;
+        return this;
+    }
+
+    public ConversionJob setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    public ConversionJob setLowMemory(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+        return this;
+    }
+
+    public File getArtifactsOutputDirectory() {
+        return artifactsOutputDirectory;
+    }
+
+    public ConversionJob setArtifactsOutputDirectory(File artifactsOutputDirectory) {
+        this.artifactsOutputDirectory = artifactsOutputDirectory;
+        return this;
+    }
+
+    public File getFeatureModelsOutputDirectory() {
+        return featureModelsOutputDirectory;
+    }
+
+    public ConversionJob setFeatureModelsOutputDirectory(File featureModelsOutputDirectory) {
+        this.featureModelsOutputDirectory = featureModelsOutputDirectory;
+        return this;
+    }
+
+    public ConversionJob setArtifactIdOverride(String artifactIdOverride) {
+        this.artifactIdOverride = artifactIdOverride;
+        return this;
+    }
+
+    public ConversionJob setDependenciesGraphFile(File dependenciesGraphFile) {
+        this.dependenciesGraphFile = dependenciesGraphFile;
+        return this;
+    }
+
+    public ConversionJob setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    public void run(ConfigurationsCache configurationsCache) throws Exception {
+        if (contentPackages.isEmpty()) {
+            throw new IllegalArgumentException("Conversion job '" + name + "' does not specify any content-package");
+        }
+        requireNonNull(artifactsOutputDirectory, "Conversion job '" + name + "' does not specify the artifacts output directory");
+        requireNonNull(featureModelsOutputDirectory, "Conversion job '" + name + "' does not specify the features output directory");
+
+        DefaultFeaturesManager featuresManager = new DefaultFeaturesManager(mergeConfigurations,
+                                                                            bundlesStartOrder,
+                                                                            featureModelsOutputDirectory,
+                                                                            artifactIdOverride,
+                                                                            properties);
+        File configurationsSpillDirectory = null;
+        if (lowMemory) {
+            configurationsSpillDirectory = Files.createTempDirectory("cp2fm-" + name.replaceAll("[^A-Za-z0-9._-]", "_") + '-').toFile();
+            featuresManager.setConfigurationsSpillDirectory(configurationsSpillDirectory);
+        }
+
+        ContentPackage2FeatureModelConverter converter = new ContentPackage2FeatureModelConverter(strictValidation)
+                                                         .setFeaturesManager(featuresManager)
+                                                         .setBundlesDeployer(new DefaultArtifactsDeployer(artifactsOutputDirectory))
+                                                         .setEntryHandlersManager(new DefaultEntryHandlersManager())
+                                                         .setAclManager(new DefaultAclManager())
+                                                         .setConfigurationsCache(configurationsCache)
+                                                         .setProgressListener(progressListener);
+
+        if (!filteringPatterns.isEmpty()) {
+            RuleBasedResourceFilter filter = new RuleBasedResourceFilter();
+
+            for (String filteringPattern : filteringPatterns) {
+                filter.addFilteringRule(filteringPattern);
+            }
+
+            converter.setResourceFilter(filter)
+                     .setFailFast(failFast);
+        }
+
+        try {
+            converter.convert(contentPackages.toArray(new File[contentPackages.size()]));
+        } finally {
+            // spilled configurations streams are still open when the conversion fails before serializing
+            featuresManager.close();
+
+            if (configurationsSpillDirectory != null) {
+                FileUtils.deleteQuietly(configurationsSpillDirectory);
+            }
+
+            // exported even when the conversion fails, it helps investigating dependency cycles
+            if (dependenciesGraphFile != null && converter.getDependencyGraph() != null) {
+                try (Writer writer = new FileWriter(dependenciesGraphFile)) {
+                    if (dependenciesGraphFile.getName().endsWith(".json")) {
+                        converter.getDependencyGraph().writeJson(writer);
+                    } else {
+                        converter.getDependencyGraph().writeDot(writer);
+                    }
+                }
+                logger.info("Content-packages dependency graph exported to {}", dependenciesGraphFile);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + ' ' + contentPackages;
+    }
+
+}
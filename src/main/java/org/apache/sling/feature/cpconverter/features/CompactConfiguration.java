@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static org.apache.sling.feature.cpconverter.features.ConfigurationProperties.compact;
+
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.apache.sling.feature.Configuration;
+
+/**
+ * {@link Configuration} directly backed by {@link ConfigurationProperties}, avoiding any intermediate copy.
+ */
+final class CompactConfiguration extends Configuration {
+
+    private final ConfigurationProperties properties;
+
+    public CompactConfiguration(String pid, ConfigurationProperties properties) {
+        super(pid);
+        this.properties = properties;
+    }
+
+    @Override
+    public Dictionary<String, Object> getProperties() {
+        return properties;
+    }
+
+    @Override
+    public Dictionary<String, Object> getConfigurationProperties() {
+        Dictionary<String, Object> configurationProperties = new Hashtable<>();
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            if (!key.startsWith(CONFIGURATOR_PREFIX)) {
+                configurationProperties.put(key, properties.get(key));
+            }
+        }
+        return configurationProperties;
+    }
+
+    @Override
+    public Configuration copy(String pid) {
+        ConfigurationProperties copy = new ConfigurationProperties(properties.size());
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            copy.put(key, compact(properties.get(key)));
+        }
+        return new CompactConfiguration(pid, copy);
+    }
+
+    @Override
+    public String toString() {
+        return "Configuration [pid=" + getPid() + ", properties=" + properties + "]";
+    }
+
+}
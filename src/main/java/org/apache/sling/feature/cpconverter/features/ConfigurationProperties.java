@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Insertion-ordered OSGi configuration properties, backed by parallel arrays and storing multi-value properties as
+ * typed arrays ({@code long[]}, {@code double[]}, {@code boolean[]}, {@code String[]}) rather than boxed collections.
+ */
+public final class ConfigurationProperties extends Dictionary<String, Object> {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    // below this size a linear scan is cheaper than hashing
+    private static final int INDEX_THRESHOLD = 8;
+
+    private String[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private Map<String, Integer> index;
+
+    public ConfigurationProperties() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConfigurationProperties(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        keys = new String[capacity];
+        values = new Object[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Enumeration<String> keys() {
+        return new ArrayEnumeration<>(keys);
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        return new ArrayEnumeration<>(values);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int position = indexOf(key);
+        return position == -1 ? null : values[position];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        requireNonNull(key, "Null keys are not allowed in configuration properties.");
+        requireNonNull(value, "Null values are not allowed in configuration properties, see key '" + key + "'.");
+
+        Object compacted = compact(value);
+
+        int position = indexOf(key);
+        if (position != -1) {
+            Object previous = values[position];
+            values[position] = compacted;
+            return previous;
+        }
+
+        if (size == keys.length) {
+            int capacity = keys.length << 1;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        keys[size] = key;
+        values[size] = compacted;
+        if (index != null) {
+            index.put(key, size);
+        }
+        size++;
+
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int position = indexOf(key);
+        if (position == -1) {
+            return null;
+        }
+
+        Object previous = values[position];
+
+        int moved = size - position - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, position + 1, keys, position, moved);
+            System.arraycopy(values, position + 1, values, position, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+
+        // positions are shifted, the index will be rebuilt on demand
+        index = null;
+
+        return previous;
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        if (size <= INDEX_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        if (index == null) {
+            index = new HashMap<>(size << 1);
+            for (int i = 0; i < size; i++) {
+                index.put(keys[i], i);
+            }
+        }
+
+        Integer position = index.get(key);
+        return position == null ? -1 : position;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append('{');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(keys[i]).append('=');
+
+            Object value = values[i];
+            if (value.getClass().isArray()) {
+                builder.append('[');
+                for (int j = 0; j < Array.getLength(value); j++) {
+                    if (j > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(Array.get(value, j));
+                }
+                builder.append(']');
+            } else {
+                builder.append(value);
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Converts collections and boxed arrays of {@code String}, {@code Long}, {@code Double} or {@code Boolean}
+     * to the related typed array; any other value is returned as it is.
+     */
+    public static Object compact(Object value) {
+        if (value instanceof Collection) {
+            Object[] elements = ((Collection<?>) value).toArray();
+            Class<?> elementType = getElementType(elements);
+            if (elementType == null) {
+                return elements;
+            }
+            return toTypedArray(elements, elementType);
+        }
+
+        if (value instanceof Long[] || value instanceof Double[] || value instanceof Boolean[]
+                || (value != null && value.getClass() == Object[].class)) {
+            Object[] array = (Object[]) value;
+            Class<?> elementType = getElementType(array);
+            if (elementType != null) {
+                return toTypedArray(array, elementType);
+            }
+        }
+
+        return value;
+    }
+
+    private static Class<?> getElementType(Object[] elements) {
+        if (elements.length == 0) {
+            return null;
+        }
+
+        Class<?> elementType = null;
+        for (Object element : elements) {
+            if (element == null) {
+                return null;
+            }
+
+            Class<?> currentType = element.getClass();
+            if (elementType == null) {
+                if (currentType != String.class
+                        && currentType != Long.class
+                        && currentType != Double.class
+                        && currentType != Boolean.class) {
+                    return null;
+                }
+                elementType = currentType;
+            } else if (elementType != currentType) {
+                return null;
+            }
+        }
+        return elementType;
+    }
+
+    private static Object toTypedArray(Object[] elements, Class<?> elementType) {
+        if (String.class == elementType) {
+            return elements instanceof String[] ? elements : Arrays.copyOf(elements, elements.length, String[].class);
+        }
+
+        if (Long.class == elementType) {
+            long[] typed = new long[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                typed[i] = (Long) elements[i];
+            }
+            return typed;
+        }
+
+        if (Double.class == elementType) {
+            double[] typed = new double[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                typed[i] = (Double) elements[i];
+            }
+            return typed;
+        }
+
+        boolean[] typed = new boolean[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            typed[i] = (Boolean) elements[i];
+        }
+        return typed;
+    }
+
+    private final class ArrayEnumeration<T> implements Enumeration<T> {
+
+        private final T[] elements;
+
+        private final int limit;
+
+        private int position = 0;
+
+        public ArrayEnumeration(T[] elements) {
+            this.elements = elements;
+            this.limit = size;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return position < Math.min(limit, size);
+        }
+
+        @Override
+        public T nextElement() {
+            if (!hasMoreElements()) {
+                throw new NoSuchElementException();
+            }
+            return elements[position++];
+        }
+
+    }
+
+}
@@ -19,14 +19,23 @@ package org.apache.sling.feature.cpconverter.features;
 import static java.util.Objects.requireNonNull;
 import static org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter.ZIP_TYPE;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
-import java.util.Collection;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.sling.feature.Artifact;
 import org.apache.sling.feature.ArtifactId;
@@ -38,11 +47,10 @@ import org.apache.sling.feature.Extensions;
 import org.apache.sling.feature.Feature;
 import org.apache.sling.feature.cpconverter.interpolator.SimpleVariablesInterpolator;
 import org.apache.sling.feature.cpconverter.interpolator.VariablesInterpolator;
-import org.apache.sling.feature.io.json.FeatureJSONWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DefaultFeaturesManager implements FeaturesManager {
+public class DefaultFeaturesManager implements FeaturesManager, Closeable {
 
     private static final String JAVA_IO_TMPDIR_PROPERTY = "java.io.tmpdir";
 
@@ -70,6 +78,15 @@ public class DefaultFeaturesManager implements FeaturesManager {
 
     private Feature targetFeature = null;
 
+    // low-memory mode: configurations are stored on disk, per run-mode, until the Features are serialized
+    private File configurationsSpillDirectory;
+
+    private final Map<String, SpilledConfigurations> spilledConfigurations = new HashMap<>();
+
+    // the Feature model looks configurations up by scanning lists, the index keeps those lookups constant;
+    // artifacts are still added through Artifacts.add(), which scans the list, the index only reports conflicts
+    private final Map<String, FeatureIndex> indexes = new HashMap<>();
+
     public DefaultFeaturesManager() {
         this(true, 20, new File(System.getProperty(JAVA_IO_TMPDIR_PROPERTY)), null, null);
     }
@@ -86,9 +103,20 @@ public class DefaultFeaturesManager implements FeaturesManager {
         this.properties = properties;
     }
 
+    /**
+     * Enables the low-memory mode, where the OSGi configurations are not retained in memory but stored
+     * in the given directory, until the Features are serialized.
+     */
+    public DefaultFeaturesManager setConfigurationsSpillDirectory(File configurationsSpillDirectory) {
+        this.configurationsSpillDirectory = configurationsSpillDirectory;
+        return this;
+    }
+
     public void init(String groupId, String artifactId, String version) {
         targetFeature = new Feature(new ArtifactId(groupId, artifactId, version, null, SLING_OSGI_FEATURE_TILE_TYPE));
         runModes.clear();
+        indexes.clear();
+        closeSpilledConfigurations();
     }
 
     public Feature getTargetFeature() {
@@ -123,6 +151,25 @@ public class DefaultFeaturesManager implements FeaturesManager {
         Artifact artifact = new Artifact(new ArtifactId(groupId, artifactId, version, classifier, type));
 
         Feature targetFeature = getRunMode(runMode);
+        FeatureIndex index = getIndex(runMode);
+
+        if (!index.artifacts.add(artifact.getId().toMvnId())) {
+            logger.debug("Artifact {} already added to Feature '{}', skipping it", artifact.getId(), targetFeature.getId());
+            return;
+        }
+
+        String versionlessKey = new StringBuilder()
+                                .append(groupId).append(':')
+                                .append(artifactId).append(':')
+                                .append(type).append(':')
+                                .append(classifier != null ? classifier : "")
+                                .toString();
+        String previousVersion = index.versions.putIfAbsent(versionlessKey, version);
+        if (previousVersion != null) {
+            logger.warn("Conflicting versions of {}:{} in Feature '{}': {} and {}",
+                        groupId, artifactId, targetFeature.getId(), previousVersion, version);
+        }
+
         Artifacts artifacts;
 
         if (ZIP_TYPE.equals(type) ) {
@@ -140,9 +187,14 @@ public class DefaultFeaturesManager implements FeaturesManager {
             artifacts = targetFeature.getBundles();
         }
 
+        // linear scan for exact duplicates, there is no supported way to append without it
         artifacts.add(artifact);
     }
 
+    private FeatureIndex getIndex(String runMode) {
+        return indexes.computeIfAbsent(runMode, k -> new FeatureIndex());
+    }
+
     private ArtifactId appendRunmode(ArtifactId id, String runMode) {
         ArtifactId newId;
         if (runMode == null) {
@@ -162,17 +214,29 @@ public class DefaultFeaturesManager implements FeaturesManager {
 
     public void addConfiguration(String runMode, String pid, Dictionary<String, Object> configurationProperties) {
         Feature feature = getRunMode(runMode);
-        Configuration configuration = feature.getConfigurations().getConfiguration(pid);
+
+        if (configurationsSpillDirectory != null) {
+            spillConfiguration(runMode, feature, pid, configurationProperties);
+            return;
+        }
+
+        Map<String, Configuration> configurations = getIndex(runMode).configurations;
+        Configuration configuration = configurations.get(pid);
 
         if (configuration == null) {
-            configuration = new Configuration(pid);
+            if (configurationProperties instanceof ConfigurationProperties) {
+                // already in the compact form, no need to copy it
+                configuration = new CompactConfiguration(pid, (ConfigurationProperties) configurationProperties);
+                feature.getConfigurations().add(configuration);
+                configurations.put(pid, configuration);
+                return;
+            }
+
+            configuration = new CompactConfiguration(pid, new ConfigurationProperties(configurationProperties.size()));
             feature.getConfigurations().add(configuration);
+            configurations.put(pid, configuration);
         } else if (!mergeConfigurations) {
-            throw new IllegalStateException("Configuration '"
-                                            + pid
-                                            + "' already defined in Feature Model '"
-                                            + feature.getId().toMvnId()
-                                            + "', set the 'mergeConfigurations' flag to 'true' if you want to merge multiple configurations with same PID");
+            throw newDuplicatedConfigurationException(pid, feature);
         }
 
         Enumeration<String> keys = configurationProperties.keys();
@@ -180,30 +244,116 @@ public class DefaultFeaturesManager implements FeaturesManager {
             String key = keys.nextElement();
             Object value = configurationProperties.get(key);
 
-            if (value != null && Collection.class.isInstance(value)) {
-                value = ((Collection<?>) value).toArray();
+            configuration.getProperties().put(key, ConfigurationProperties.compact(value));
+        }
+    }
+
+    private void spillConfiguration(String runMode, Feature feature, String pid, Dictionary<String, Object> configurationProperties) {
+        try {
+            SpilledConfigurations configurations = spilledConfigurations.get(runMode);
+            if (configurations == null) {
+                if (!configurationsSpillDirectory.exists()) {
+                    configurationsSpillDirectory.mkdirs();
+                }
+                File storeFile = File.createTempFile("configurations-", ".bin", configurationsSpillDirectory);
+                configurations = new SpilledConfigurations(storeFile);
+                spilledConfigurations.put(runMode, configurations);
+            } else if (!mergeConfigurations && configurations.contains(pid)) {
+                throw newDuplicatedConfigurationException(pid, feature);
             }
 
-            configuration.getProperties().put(key, value);
+            configurations.append(pid, configurationProperties);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible to store configuration '" + pid + "' to " + configurationsSpillDirectory, e);
         }
     }
 
+    private static IllegalStateException newDuplicatedConfigurationException(String pid, Feature feature) {
+        return new IllegalStateException("Configuration '"
+                                         + pid
+                                         + "' already defined in Feature Model '"
+                                         + feature.getId().toMvnId()
+                                         + "', set the 'mergeConfigurations' flag to 'true' if you want to merge multiple configurations with same PID");
+    }
+
+    /**
+     * Releases the configurations spilled to disk, if any, i.e. when the conversion fails before {@link #serialize()}.
+     */
+    @Override
+    public void close() {
+        closeSpilledConfigurations();
+    }
+
+    private void closeSpilledConfigurations() {
+        for (SpilledConfigurations configurations : spilledConfigurations.values()) {
+            try {
+                configurations.close();
+            } catch (IOException e) {
+                logger.warn("Impossible to remove stored configurations: {}", e.getMessage());
+            }
+        }
+        spilledConfigurations.clear();
+    }
+
     public void serialize() throws Exception {
-        RunmodeMapper runmodeMapper = RunmodeMapper.open(featureModelsOutputDirectory);
+        if (!featureModelsOutputDirectory.exists()) {
+            featureModelsOutputDirectory.mkdirs();
+        }
 
-        seralize(targetFeature, null, runmodeMapper);
+        // features are independent from each other, they can be written concurrently
+        Map<String, Feature> features = new TreeMap<>(runModes);
 
-        if (!runModes.isEmpty()) {
-            for (Entry<String, Feature> runmodeEntry : runModes.entrySet()) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(features.size() + 1, Runtime.getRuntime().availableProcessors()));
+        try {
+            // the default (null) run-mode first, then the others sorted by name
+            Map<String, Future<String>> fileNames = new LinkedHashMap<>();
+            fileNames.put(null, executor.submit(() -> seralize(targetFeature, null)));
+            for (Entry<String, Feature> runmodeEntry : features.entrySet()) {
                 String runmode = runmodeEntry.getKey();
-                seralize(runmodeEntry.getValue(), runmode, runmodeMapper);
+                Feature feature = runmodeEntry.getValue();
+                fileNames.put(runmode, executor.submit(() -> seralize(feature, runmode)));
+            }
+
+            // mapper updates are collected once all features are written, in a deterministic order
+            RunmodeMapper runmodeMapper = RunmodeMapper.open(featureModelsOutputDirectory);
+            Exception failure = null;
+
+            for (Entry<String, Future<String>> fileName : fileNames.entrySet()) {
+                try {
+                    runmodeMapper.addOrUpdate(fileName.getKey(), await(fileName.getValue()));
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
             }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            runmodeMapper.save();
+        } finally {
+            executor.shutdownNow();
+            closeSpilledConfigurations();
         }
+    }
 
-        runmodeMapper.save();
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
     }
 
-    private void seralize(Feature feature, String runMode, RunmodeMapper runmodeMapper) throws Exception {
+    private String seralize(Feature feature, String runMode) throws Exception {
         StringBuilder fileNameBuilder = new StringBuilder().append(feature.getId().getArtifactId());
 
         String classifier = feature.getId().getClassifier();
@@ -211,8 +361,17 @@ public class DefaultFeaturesManager implements FeaturesManager {
             fileNameBuilder.append('-').append(classifier);
         }
 
-        if (properties != null) {
-            properties.put("filename", fileNameBuilder.toString());
+        ArtifactId idOverrride = null;
+        if (artifactIdOverride != null && !artifactIdOverride.isEmpty()) {
+            // features are serialized concurrently, each one interpolates its own file name
+            Map<String, String> featureProperties = null;
+            if (properties != null) {
+                featureProperties = new HashMap<>(properties);
+                featureProperties.put("filename", fileNameBuilder.toString());
+            }
+
+            String interpolatedIdOverride = interpolator.interpolate(artifactIdOverride, featureProperties);
+            idOverrride = appendRunmode(ArtifactId.parse(interpolatedIdOverride), runMode);
         }
 
         fileNameBuilder.append(JSON_FILE_EXTENSION);
@@ -220,25 +379,27 @@ public class DefaultFeaturesManager implements FeaturesManager {
         String fileName = fileNameBuilder.toString();
 
         File targetFile = new File(featureModelsOutputDirectory, fileName);
-        if (!targetFile.getParentFile().exists()) {
-            targetFile.getParentFile().mkdirs();
-        }
 
-        if (artifactIdOverride != null && !artifactIdOverride.isEmpty()) {
-            String interpolatedIdOverride = interpolator.interpolate(artifactIdOverride, properties);
-            ArtifactId idOverrride = appendRunmode(ArtifactId.parse(interpolatedIdOverride), runMode);
-            feature = feature.copy(idOverrride);
-        }
+        logger.info("Writing resulting Feature Model '{}' to file '{}'...", idOverrride != null ? idOverrride : feature.getId(), targetFile);
 
-        logger.info("Writing resulting Feature Model '{}' to file '{}'...", feature.getId(), targetFile);
+        StreamingFeatureJSONWriter.write(targetFile, feature, idOverrride, spilledConfigurations.get(runMode));
 
-        try (FileWriter targetWriter = new FileWriter(targetFile)) {
-            FeatureJSONWriter.write(targetWriter, feature);
+        logger.info("'{}' Feature File successfully written!", targetFile);
 
-            logger.info("'{}' Feature File successfully written!", targetFile);
+        return fileName;
+    }
+
+    private static final class FeatureIndex {
+
+        // exact artifact IDs
+        private final Set<String> artifacts = new HashSet<>();
+
+        // groupId:artifactId:type:classifier -> first added version
+        private final Map<String, String> versions = new HashMap<>();
+
+        // PID -> configuration
+        private final Map<String, Configuration> configurations = new HashMap<>();
 
-            runmodeMapper.addOrUpdate(runMode, fileName);
-        }
     }
 
 }
@@ -16,38 +16,65 @@
  */
 package org.apache.sling.feature.cpconverter.features;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
-
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.sling.feature.cpconverter.shared.AtomicFiles;
+
+/**
+ * Maps run-modes to the Feature files generated for them.
+ * Changes are collected in memory and merged, on {@link #save()}, to the latest version of the mapping file,
+ * under a file lock, then the file is replaced atomically: converters running in parallel,
+ * in the same or in different processes, can share the same output directory.
+ */
 final class RunmodeMapper {
 
     private static final String FILENAME = "runmode.mapping";
 
-    public static RunmodeMapper open(File featureModelsOutputDirectory) throws IOException {
-        Properties properties = new Properties();
+    // the mapping file itself is replaced on each save, the lock is held on a stable sibling file
+    private static final String LOCK_FILENAME = '.' + FILENAME + ".lock";
 
-        File runmodeMappingFile = new File(featureModelsOutputDirectory, FILENAME);
-        if (runmodeMappingFile.exists()) {
-            try (FileInputStream input = new FileInputStream(runmodeMappingFile)) {
-                properties.load(input);
-            }
-        }
+    private static final String DEFAULT = "(default)";
+
+    private static final String SEPARATOR = ",";
+
+    private static final String COMMENT = "File edited by the Apache Sling Content Package to Sling Feature converter";
+
+    // file locks are held by the whole JVM, threads of the same process have to be serialized apart
+    private static final Map<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
 
-        return new RunmodeMapper(runmodeMappingFile, properties);
+    public static RunmodeMapper open(File featureModelsOutputDirectory) throws IOException {
+        return new RunmodeMapper(featureModelsOutputDirectory.toPath().toAbsolutePath().normalize());
     }
 
-    private static final String DEFAULT = "(default)";
+    private final Map<String, Set<String>> additions = new TreeMap<>();
 
-    private final File runmodeMappingFile;
+    private final Path runmodeMappingFile;
 
-    private final Properties properties;
+    private final Path lockFile;
 
-    private RunmodeMapper(File runmodeMappingFile, Properties properties) {
-        this.runmodeMappingFile = runmodeMappingFile;
-        this.properties = properties;
+    private RunmodeMapper(Path featureModelsOutputDirectory) {
+        this.runmodeMappingFile = featureModelsOutputDirectory.resolve(FILENAME);
+        this.lockFile = featureModelsOutputDirectory.resolve(LOCK_FILENAME);
     }
 
     public void addOrUpdate(String runMode, String jsonFileName) {
@@ -55,21 +82,93 @@ final class RunmodeMapper {
             runMode = DEFAULT;
         }
 
-        String value = properties.getProperty(runMode);
+        additions.computeIfAbsent(runMode, k -> new LinkedHashSet<>()).add(jsonFileName);
+    }
+
+    public void save() throws IOException {
+        ReentrantLock jvmLock = JVM_LOCKS.computeIfAbsent(lockFile, k -> new ReentrantLock());
+        jvmLock.lock();
+        try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock fileLock = lockChannel.lock();
+            try {
+                Map<String, Set<String>> mapping = read(runmodeMappingFile);
+
+                for (Entry<String, Set<String>> addition : additions.entrySet()) {
+                    mapping.computeIfAbsent(addition.getKey(), k -> new LinkedHashSet<>()).addAll(addition.getValue());
+                }
+
+                write(mapping, runmodeMappingFile);
+            } finally {
+                fileLock.release();
+            }
+        } finally {
+            jvmLock.unlock();
+        }
+    }
+
+    private static Map<String, Set<String>> read(Path runmodeMappingFile) throws IOException {
+        Map<String, Set<String>> mapping = new TreeMap<>();
 
-        if (value != null && !value.contains(jsonFileName)) {
-            value += ',' + jsonFileName;
-        } else {
-            value = jsonFileName;
+        if (!Files.exists(runmodeMappingFile)) {
+            return mapping;
         }
 
-        properties.setProperty(runMode, value);
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(runmodeMappingFile)) {
+            properties.load(input);
+        }
+
+        for (String runMode : properties.stringPropertyNames()) {
+            Set<String> fileNames = new LinkedHashSet<>();
+            for (String fileName : properties.getProperty(runMode).split(SEPARATOR)) {
+                fileName = fileName.trim();
+                if (!fileName.isEmpty()) {
+                    fileNames.add(fileName);
+                }
+            }
+            mapping.put(runMode, fileNames);
+        }
+
+        return mapping;
     }
 
-    public void save() throws IOException {
-        try (FileOutputStream output = new FileOutputStream(runmodeMappingFile)) {
-            properties.store(output, "File edited by the Apache Sling Content Package to Sling Feature converter");
+    private static void write(Map<String, Set<String>> mapping, Path runmodeMappingFile) throws IOException {
+        Properties properties = new SortedProperties();
+        for (Entry<String, Set<String>> entry : mapping.entrySet()) {
+            properties.setProperty(entry.getKey(), String.join(SEPARATOR, entry.getValue()));
+        }
+
+        // Properties.store() always writes the current date as first comment line, drop it
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        properties.store(buffer, null);
+        String entries = buffer.toString(StandardCharsets.ISO_8859_1.name());
+        entries = entries.substring(entries.indexOf('\n') + 1);
+
+        byte[] content = ('#' + COMMENT + System.lineSeparator() + entries).getBytes(StandardCharsets.ISO_8859_1);
+        AtomicFiles.write(runmodeMappingFile, output -> output.write(content));
+    }
+
+    /**
+     * Stores the entries sorted by run-mode, so the same conversion always produces the same mapping file.
+     */
+    private static final class SortedProperties extends Properties {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Enumeration<Object> keys() {
+            return Collections.enumeration(new TreeSet<>(keySet()));
         }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            Map<Object, Object> sorted = new TreeMap<>();
+            for (Map.Entry<Object, Object> entry : super.entrySet()) {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+            return Collections.unmodifiableSet(sorted.entrySet());
+        }
+
     }
 
 }
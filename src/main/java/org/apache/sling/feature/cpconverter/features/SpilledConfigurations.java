@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.sling.feature.Configuration;
+import org.apache.sling.feature.Configurations;
+
+/**
+ * Append-only, on-disk, store of the configurations of a single Feature: only the PIDs are kept in memory.
+ * Configurations added more than once under the same PID are merged, in order, while iterating.
+ *
+ * It is a write-only view, meant to be streamed by the Feature writer: only {@link #size()},
+ * {@link #isEmpty()} and {@link #iterator()} reflect the stored configurations.
+ */
+final class SpilledConfigurations extends Configurations implements Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File storeFile;
+
+    // PID -> number of records, in the first insertion order
+    private final Map<String, Integer> records = new LinkedHashMap<>();
+
+    private transient ObjectOutputStream output;
+
+    public SpilledConfigurations(File storeFile) {
+        this.storeFile = requireNonNull(storeFile, "Null file can not be used to store configurations");
+    }
+
+    public boolean contains(String pid) {
+        return records.containsKey(pid);
+    }
+
+    public void append(String pid, Dictionary<String, Object> properties) throws IOException {
+        if (output == null) {
+            output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile)));
+        }
+
+        output.writeUTF(pid);
+        output.writeInt(properties.size());
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            output.writeUTF(key);
+            output.writeObject(ConfigurationProperties.compact(properties.get(key)));
+        }
+        // no back-references across records, so the stream does not retain all the written values
+        output.reset();
+
+        records.merge(pid, 1, Integer::sum);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    @Override
+    public Iterator<Configuration> iterator() {
+        try {
+            if (output != null) {
+                output.flush();
+            }
+            return new RecordsIterator();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible to read stored configurations from " + storeFile, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+        records.clear();
+        storeFile.delete();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    private final class RecordsIterator implements Iterator<Configuration> {
+
+        // configurations stored more than once are merged in memory, they are expected to be few
+        private final Map<String, Configuration> merged = new HashMap<>();
+
+        private ObjectInputStream input;
+
+        private Configuration next;
+
+        RecordsIterator() throws IOException {
+            if (records.isEmpty()) {
+                return;
+            }
+
+            boolean hasDuplicates = false;
+            for (Integer count : records.values()) {
+                if (count > 1) {
+                    hasDuplicates = true;
+                    break;
+                }
+            }
+
+            if (hasDuplicates) {
+                try (ObjectInputStream scan = open()) {
+                    Configuration configuration;
+                    while ((configuration = read(scan)) != null) {
+                        if (records.get(configuration.getPid()) > 1) {
+                            Configuration previous = merged.putIfAbsent(configuration.getPid(), configuration);
+                            if (previous != null) {
+                                Enumeration<String> keys = configuration.getProperties().keys();
+                                while (keys.hasMoreElements()) {
+                                    String key = keys.nextElement();
+                                    previous.getProperties().put(key, configuration.getProperties().get(key));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            input = open();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Configuration next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Configuration current = next;
+            advance();
+            return current;
+        }
+
+        private void advance() {
+            try {
+                Configuration configuration;
+                while ((configuration = read(input)) != null) {
+                    if (records.get(configuration.getPid()) == 1) {
+                        next = configuration;
+                        return;
+                    }
+
+                    // merged configurations are returned at their first occurrence only
+                    Configuration mergedConfiguration = merged.remove(configuration.getPid());
+                    if (mergedConfiguration != null) {
+                        next = mergedConfiguration;
+                        return;
+                    }
+                }
+
+                next = null;
+                input.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossible to read stored configurations from " + storeFile, e);
+            }
+        }
+
+        private ObjectInputStream open() throws IOException {
+            return new ObjectInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+        }
+
+        private Configuration read(ObjectInputStream from) throws IOException {
+            String pid;
+            try {
+                pid = from.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            int size = from.readInt();
+            ConfigurationProperties properties = new ConfigurationProperties(size);
+            for (int i = 0; i < size; i++) {
+                String key = from.readUTF();
+                try {
+                    properties.put(key, from.readObject());
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Configuration '" + pid + "' property '" + key + "' can not be read", e);
+                }
+            }
+            return new CompactConfiguration(pid, properties);
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import javax.json.stream.JsonGenerator;
+
+import org.apache.sling.feature.ArtifactId;
+import org.apache.sling.feature.Configurations;
+import org.apache.sling.feature.Feature;
+import org.apache.sling.feature.cpconverter.shared.AtomicFiles;
+import org.apache.sling.feature.io.json.FeatureJSONWriter;
+
+/**
+ * Streams a Feature to a buffered, UTF-8 encoded, file; the (optional) ID override is applied
+ * while writing, so the Feature model doesn't have to be copied.
+ * The target file is replaced atomically, where the file system supports it.
+ */
+final class StreamingFeatureJSONWriter extends FeatureJSONWriter {
+
+    public static void write(File targetFile, Feature feature, ArtifactId idOverride) throws IOException {
+        write(targetFile, feature, idOverride, null);
+    }
+
+    /**
+     * @param configurationsOverride the configurations streamed in place of the Feature ones, when not null
+     */
+    public static void write(File targetFile,
+                             Feature feature,
+                             ArtifactId idOverride,
+                             Configurations configurationsOverride) throws IOException {
+        // readers never see a partially written file: it is written aside and then moved in place
+        // the JSON generator flushes and closes the writer once the Feature is written
+        AtomicFiles.write(targetFile.toPath(),
+                          output -> new StreamingFeatureJSONWriter(idOverride, configurationsOverride).writeFeature(new OutputStreamWriter(output, UTF_8), feature));
+    }
+
+    private final ArtifactId idOverride;
+
+    private final Configurations configurationsOverride;
+
+    private StreamingFeatureJSONWriter(ArtifactId idOverride, Configurations configurationsOverride) {
+        this.idOverride = idOverride;
+        this.configurationsOverride = configurationsOverride;
+    }
+
+    @Override
+    protected void writeFeatureId(JsonGenerator generator, Feature feature) {
+        if (idOverride == null) {
+            super.writeFeatureId(generator, feature);
+        } else {
+            writeProperty(generator, "id", idOverride.toMvnId());
+        }
+    }
+
+    @Override
+    protected void writeConfigurations(JsonGenerator generator, Configurations configurations) {
+        super.writeConfigurations(generator, configurationsOverride != null ? configurationsOverride : configurations);
+    }
+
+}
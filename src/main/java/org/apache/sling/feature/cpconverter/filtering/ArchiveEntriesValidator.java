@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.filtering;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks the entries names of a content-package, as listed in the zip central directory, against a {@link ResourceFilter}:
+ * nothing is inflated, so unacceptable archives are rejected before any conversion work is done.
+ */
+public final class ArchiveEntriesValidator {
+
+    private final ResourceFilter resourceFilter;
+
+    public ArchiveEntriesValidator(ResourceFilter resourceFilter) {
+        this.resourceFilter = requireNonNull(resourceFilter, "Null resource filter can not be used to validate archives");
+    }
+
+    public void validate(File contentPackage) throws IOException {
+        requireNonNull(contentPackage, "Null content-package can not be validated");
+
+        try (ZipFile zipFile = new ZipFile(contentPackage)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                // same path format the vault package scanner uses
+                String path = '/' + entry.getName();
+
+                if (resourceFilter.isFilteredOut(path)) {
+                    throw new IllegalArgumentException("Path '"
+                                                       + path
+                                                       + "' in archive "
+                                                       + contentPackage
+                                                       + " not allowed by user configuration, please check configured filtering patterns");
+                }
+            }
+        }
+    }
+
+}
@@ -18,45 +18,270 @@ package org.apache.sling.feature.cpconverter.filtering;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Filters resources out by regular expressions.
+ *
+ * Patterns are compiled once, on first use, in:
+ * <ul>
+ * <li>literal paths and literal prefixes followed by <code>.*</code>, matched without any regex evaluation;</li>
+ * <li>a single alternation for all the other patterns, except the ones with back-references, evaluated one by one.</li>
+ * </ul>
+ * The decision whether a directory is excluded as a whole by a prefix is cached, so files below an excluded directory
+ * are rejected with a single lookup, and the whole subtree can be pruned by the scanner.
+ */
 public final class RegexBasedResourceFilter implements ResourceFilter {
 
+    private static final int MAX_CACHED_DIRECTORIES = 4096;
+
+    private static final String ANY_SUFFIX = ".*";
+
+    private static final String REGEX_METACHARS = ".$|()[]{}^?*+\\";
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final List<Pattern> patterns = new LinkedList<>();
+    private final List<String> filteringPatterns = new ArrayList<>();
 
-    public void addFilteringPattern(String filteringPattern) {
+    private final Map<String, Boolean> excludedDirectories = new ConcurrentHashMap<>();
+
+    private volatile CompiledPatterns compiledPatterns;
+
+    public synchronized void addFilteringPattern(String filteringPattern) {
         requireNonNull(filteringPattern, "Null pattern to filter resources out is not a valid filtering pattern");
 
         if (filteringPattern.isEmpty()) {
             throw new IllegalArgumentException("Empty pattern to filter resources out is not a valid filtering pattern");
         }
 
-        patterns.add(Pattern.compile(filteringPattern));
+        // fail fast on invalid patterns
+        Pattern.compile(filteringPattern);
+
+        filteringPatterns.add(filteringPattern);
+        compiledPatterns = null;
+        excludedDirectories.clear();
     }
 
     public boolean isFilteredOut(String path) {
-        for (Pattern pattern : patterns) {
-            logger.debug("Checking if path '{}' matches against '{}' pattern...", path, pattern);
+        CompiledPatterns compiled = getCompiledPatterns();
+
+        int separatorIndex = path.lastIndexOf('/');
+        if (separatorIndex > 0 && isDirectoryFilteredOut(compiled, path.substring(0, separatorIndex + 1))) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Path '{}' is in a directory excluded by the configured filtering patterns.", path);
+            }
+            return true;
+        }
 
-            if (pattern.matcher(path).matches()) {
-                logger.debug("Path '{}' matches against '{}' filtering pattern.", path, pattern);
+        boolean filteredOut = compiled.matches(path);
 
-                return true;
-            } else {
-                logger.debug("Path '{}' does not matches against '{}' filtering pattern.", path, pattern);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Path '{}' {} against the configured filtering patterns.", path, filteredOut ? "matches" : "does not match");
+        }
+
+        return filteredOut;
+    }
+
+    @Override
+    public boolean isSubtreeFilteredOut(String directoryPath) {
+        requireNonNull(directoryPath, "Null directory path can not be checked against filtering patterns");
+
+        String directory = directoryPath.endsWith("/") ? directoryPath : directoryPath + '/';
+        boolean filteredOut = isDirectoryFilteredOut(getCompiledPatterns(), directory);
+
+        if (filteredOut && logger.isDebugEnabled()) {
+            logger.debug("Directory '{}' is excluded by the configured filtering patterns.", directoryPath);
+        }
+
+        return filteredOut;
+    }
+
+    private boolean isDirectoryFilteredOut(CompiledPatterns compiled, String directory) {
+        if (!compiled.hasPrefixes()) {
+            return false;
+        }
+
+        Boolean filteredOut = excludedDirectories.get(directory);
+        if (filteredOut == null) {
+            filteredOut = compiled.matchesPrefix(directory);
+
+            if (excludedDirectories.size() >= MAX_CACHED_DIRECTORIES) {
+                excludedDirectories.clear();
+            }
+            excludedDirectories.put(directory, filteredOut);
+        }
+        return filteredOut;
+    }
+
+    private CompiledPatterns getCompiledPatterns() {
+        CompiledPatterns compiled = compiledPatterns;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = compiledPatterns;
+                if (compiled == null) {
+                    compiled = new CompiledPatterns(filteringPatterns);
+                    compiledPatterns = compiled;
+                }
             }
         }
+        return compiled;
+    }
 
-        logger.debug("Path '{}' does not match against any configured filtering pattern.", path);
+    /**
+     * Returns the given pattern unescaped if it doesn't contain any meta-character, null otherwise.
+     */
+    private static String literal(String pattern) {
+        StringBuilder literal = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            char current = pattern.charAt(i);
+            if (current == '\\') {
+                // \d, \w, \Q, \1, ... are not literals
+                if (i + 1 >= pattern.length() || Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                    return null;
+                }
+                literal.append(pattern.charAt(++i));
+            } else if (REGEX_METACHARS.indexOf(current) != -1) {
+                return null;
+            } else {
+                literal.append(current);
+            }
+        }
+        return literal.toString();
+    }
 
+    private static boolean hasBackReferences(String pattern) {
+        for (int i = 0; i < pattern.length() - 1; i++) {
+            if (pattern.charAt(i) == '\\') {
+                char escaped = pattern.charAt(i + 1);
+                if ((escaped >= '1' && escaped <= '9') || escaped == 'k') {
+                    return true;
+                }
+                // skip the escaped char
+                i++;
+            }
+        }
         return false;
     }
 
+    private static final class CompiledPatterns {
+
+        private final Set<String> literals = new HashSet<>();
+
+        // minimal set of prefixes: none of them is prefix of another, so the floor entry is the only candidate
+        private final TreeSet<String> prefixes = new TreeSet<>();
+
+        private final Pattern combined;
+
+        private final List<Pattern> standalones = new ArrayList<>();
+
+        CompiledPatterns(List<String> filteringPatterns) {
+            List<String> regexes = new ArrayList<>();
+
+            for (String filteringPattern : filteringPatterns) {
+                String prefix = filteringPattern.endsWith(ANY_SUFFIX)
+                                ? literal(filteringPattern.substring(0, filteringPattern.length() - ANY_SUFFIX.length()))
+                                : null;
+                String literal = literal(filteringPattern);
+
+                if (prefix != null) {
+                    addPrefix(prefix);
+                } else if (literal != null) {
+                    literals.add(literal);
+                } else if (hasBackReferences(filteringPattern)) {
+                    // group numbers would be shifted in the alternation
+                    standalones.add(Pattern.compile(filteringPattern));
+                } else {
+                    regexes.add(filteringPattern);
+                }
+            }
+
+            combined = combine(regexes);
+        }
+
+        private void addPrefix(String prefix) {
+            String floor = prefixes.floor(prefix);
+            if (floor != null && prefix.startsWith(floor)) {
+                // already covered by a shorter prefix
+                return;
+            }
+
+            // drop the longer prefixes now covered by the new one
+            String higher = prefixes.higher(prefix);
+            while (higher != null && higher.startsWith(prefix)) {
+                prefixes.remove(higher);
+                higher = prefixes.higher(prefix);
+            }
+
+            prefixes.add(prefix);
+        }
+
+        private Pattern combine(List<String> regexes) {
+            if (regexes.isEmpty()) {
+                return null;
+            }
+
+            if (regexes.size() == 1) {
+                return Pattern.compile(regexes.get(0));
+            }
+
+            StringBuilder alternation = new StringBuilder();
+            for (String regex : regexes) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                // non-capturing groups keep the inline flags scoped to the original pattern
+                alternation.append("(?:").append(regex).append(')');
+            }
+
+            try {
+                return Pattern.compile(alternation.toString());
+            } catch (PatternSyntaxException e) {
+                // i.e. the same named group declared in different patterns
+                for (String regex : regexes) {
+                    standalones.add(Pattern.compile(regex));
+                }
+                return null;
+            }
+        }
+
+        boolean hasPrefixes() {
+            return !prefixes.isEmpty();
+        }
+
+        boolean matchesPrefix(String path) {
+            String candidate = prefixes.floor(path);
+            return candidate != null && path.startsWith(candidate);
+        }
+
+        boolean matches(String path) {
+            if (literals.contains(path) || matchesPrefix(path)) {
+                return true;
+            }
+
+            if (combined != null && combined.matcher(path).matches()) {
+                return true;
+            }
+
+            for (Pattern standalone : standalones) {
+                if (standalone.matcher(path).matches()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+    }
+
 }
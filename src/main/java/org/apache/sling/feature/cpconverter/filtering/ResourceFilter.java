@@ -20,4 +20,12 @@ public interface ResourceFilter {
 
     boolean isFilteredOut(String path);
 
+    /**
+     * @return true if every resource below the given directory is filtered out,
+     * so the whole subtree can be pruned with a single check
+     */
+    default boolean isSubtreeFilteredOut(String directoryPath) {
+        return false;
+    }
+
 }
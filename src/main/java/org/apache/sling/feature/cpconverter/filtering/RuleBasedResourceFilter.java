@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.filtering;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters resources out by prefix, glob and regex rules.
+ *
+ * Prefix and glob rules are compiled in a trie of path segments, so they are checked by walking the path once;
+ * regex rules are delegated to a {@link RegexBasedResourceFilter}. Rules are regexes unless marked otherwise.
+ *
+ * Glob rules support <code>*</code> and <code>?</code> inside a path segment and <code>**</code> as a whole
+ * segment, matching zero or more segments; a trailing <code>/**</code> matches everything below the directory.
+ */
+public final class RuleBasedResourceFilter implements ResourceFilter {
+
+    public static final String PREFIX_RULE_MARKER = "prefix:";
+
+    public static final String GLOB_RULE_MARKER = "glob:";
+
+    public static final String REGEX_RULE_MARKER = "regex:";
+
+    private static final String ANY_SUFFIX = ".*";
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private static final String REGEX_META_CHARS = "\\()[]{}+^$|.*?";
+
+    private final Node root = new Node();
+
+    private final RegexBasedResourceFilter regexFilter = new RegexBasedResourceFilter();
+
+    private boolean hasRegexRules = false;
+
+    /**
+     * Adds a rule, detecting its type:
+     * <ul>
+     * <li>rules starting with <code>prefix:</code>, <code>glob:</code> or <code>regex:</code> are explicit;</li>
+     * <li>everything else is a regex, where a plain literal followed by <code>.*</code> is evaluated as a prefix rule,
+     * since both match the same paths.</li>
+     * </ul>
+     */
+    public void addFilteringRule(String filteringRule) {
+        checkRule(filteringRule);
+
+        if (filteringRule.startsWith(PREFIX_RULE_MARKER)) {
+            addPrefixRule(filteringRule.substring(PREFIX_RULE_MARKER.length()));
+        } else if (filteringRule.startsWith(GLOB_RULE_MARKER)) {
+            addGlobRule(filteringRule.substring(GLOB_RULE_MARKER.length()));
+        } else if (filteringRule.startsWith(REGEX_RULE_MARKER)) {
+            addRegexRule(filteringRule.substring(REGEX_RULE_MARKER.length()));
+        } else {
+            String prefix = filteringRule.endsWith(ANY_SUFFIX)
+                            ? unescapeLiteral(filteringRule.substring(0, filteringRule.length() - ANY_SUFFIX.length()))
+                            : null;
+
+            if (prefix != null) {
+                addPrefixRule(prefix);
+            } else {
+                addRegexRule(filteringRule);
+            }
+        }
+    }
+
+    public void addPrefixRule(String prefix) {
+        requireNonNull(prefix, "Null prefix to filter resources out is not a valid filtering rule");
+
+        String[] segments = prefix.split("/", -1);
+        Node node = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            node = node.getLiteralChild(segments[i]);
+        }
+
+        String last = segments[segments.length - 1];
+        if (last.isEmpty()) {
+            // i.e. /jcr_root/apps/legacy/
+            node.descendants = true;
+        } else {
+            // i.e. /jcr_root/apps/leg matches /jcr_root/apps/leg, /jcr_root/apps/legacy and everything below them
+            Node child = node.getSegmentChild(new SegmentMatcher(last, true));
+            child.exact = true;
+            child.descendants = true;
+        }
+    }
+
+    public void addGlobRule(String glob) {
+        checkRule(glob);
+
+        String[] segments = glob.split("/", -1);
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (i == segments.length - 1) {
+                    node.descendants = true;
+                    return;
+                }
+
+                if (node.anySegments == null) {
+                    node.anySegments = new Node();
+                }
+                node = node.anySegments;
+            } else if (segment.indexOf('*') != -1 || segment.indexOf('?') != -1) {
+                node = node.getSegmentChild(new SegmentMatcher(segment, false));
+            } else {
+                node = node.getLiteralChild(segment);
+            }
+        }
+        node.exact = true;
+    }
+
+    public void addRegexRule(String regex) {
+        regexFilter.addFilteringPattern(regex);
+        hasRegexRules = true;
+    }
+
+    @Override
+    public boolean isFilteredOut(String path) {
+        return matches(root, path.split("/", -1), 0)
+               || (hasRegexRules && regexFilter.isFilteredOut(path));
+    }
+
+    @Override
+    public boolean isSubtreeFilteredOut(String directoryPath) {
+        requireNonNull(directoryPath, "Null directory path can not be checked against filtering rules");
+
+        String directory = directoryPath.endsWith("/")
+                           ? directoryPath.substring(0, directoryPath.length() - 1)
+                           : directoryPath;
+
+        return matchesSubtree(root, directory.split("/", -1), 0)
+               || (hasRegexRules && regexFilter.isSubtreeFilteredOut(directoryPath));
+    }
+
+    private static boolean matches(Node node, String[] segments, int index) {
+        if (index < segments.length && node.descendants) {
+            return true;
+        }
+
+        if (index == segments.length && node.exact) {
+            return true;
+        }
+
+        if (node.anySegments != null) {
+            for (int next = index; next <= segments.length; next++) {
+                if (matches(node.anySegments, segments, next)) {
+                    return true;
+                }
+            }
+        }
+
+        if (index == segments.length) {
+            return false;
+        }
+
+        Node child = node.literalChildren.get(segments[index]);
+        if (child != null && matches(child, segments, index + 1)) {
+            return true;
+        }
+
+        for (Map.Entry<SegmentMatcher, Node> segmentChild : node.segmentChildren.entrySet()) {
+            if (segmentChild.getKey().matches(segments[index])
+                    && matches(segmentChild.getValue(), segments, index + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * true if every path with at least one more segment than the given directory matches
+     */
+    private static boolean matchesSubtree(Node node, String[] segments, int index) {
+        if (node.descendants) {
+            return true;
+        }
+
+        if (node.anySegments != null) {
+            for (int next = index; next <= segments.length; next++) {
+                if (matchesSubtree(node.anySegments, segments, next)) {
+                    return true;
+                }
+            }
+        }
+
+        if (index == segments.length) {
+            return false;
+        }
+
+        Node child = node.literalChildren.get(segments[index]);
+        if (child != null && matchesSubtree(child, segments, index + 1)) {
+            return true;
+        }
+
+        for (Map.Entry<SegmentMatcher, Node> segmentChild : node.segmentChildren.entrySet()) {
+            if (segmentChild.getKey().matches(segments[index])
+                    && matchesSubtree(segmentChild.getValue(), segments, index + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void checkRule(String filteringRule) {
+        requireNonNull(filteringRule, "Null rule to filter resources out is not a valid filtering rule");
+
+        if (filteringRule.isEmpty()) {
+            throw new IllegalArgumentException("Empty rule to filter resources out is not a valid filtering rule");
+        }
+    }
+
+    /*
+     * the literal matched by the given regex, null if it contains any construct but escaped non-alphanumeric chars
+     */
+    private static String unescapeLiteral(String regex) {
+        StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char current = regex.charAt(i);
+            if (current == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                literal.append(regex.charAt(++i));
+            } else if (REGEX_META_CHARS.indexOf(current) != -1) {
+                return null;
+            } else {
+                literal.append(current);
+            }
+        }
+        return literal.toString();
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> literalChildren = new HashMap<>();
+
+        private final Map<SegmentMatcher, Node> segmentChildren = new HashMap<>();
+
+        private Node anySegments;
+
+        // the path ends here
+        private boolean exact;
+
+        // any path with at least one more segment
+        private boolean descendants;
+
+        Node getLiteralChild(String segment) {
+            return literalChildren.computeIfAbsent(segment, k -> new Node());
+        }
+
+        Node getSegmentChild(SegmentMatcher matcher) {
+            return segmentChildren.computeIfAbsent(matcher, k -> new Node());
+        }
+
+    }
+
+    private static final class SegmentMatcher {
+
+        private final String pattern;
+
+        private final boolean prefix;
+
+        SegmentMatcher(String pattern, boolean prefix) {
+            this.pattern = pattern;
+            this.prefix = prefix;
+        }
+
+        boolean matches(String segment) {
+            if (prefix) {
+                return segment.startsWith(pattern);
+            }
+
+            // iterative wildcard matching, backtracking to the last '*' only
+            int p = 0;
+            int s = 0;
+            int star = -1;
+            int mark = 0;
+            while (s < segment.length()) {
+                if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == segment.charAt(s))) {
+                    p++;
+                    s++;
+                } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    star = p++;
+                    mark = s;
+                } else if (star != -1) {
+                    p = star + 1;
+                    s = ++mark;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == pattern.length();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pattern.hashCode() + Boolean.hashCode(prefix);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SegmentMatcher)) {
+                return false;
+            }
+            SegmentMatcher other = (SegmentMatcher) obj;
+            return prefix == other.prefix && pattern.equals(other.pattern);
+        }
+
+    }
+
+}
@@ -17,19 +17,20 @@
 package org.apache.sling.feature.cpconverter.handlers;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Dictionary;
 import java.util.regex.Matcher;
 
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
+import org.apache.sling.feature.cpconverter.shared.StreamUtils;
 
 abstract class AbstractConfigurationEntryHandler extends AbstractRegexEntryHandler {
 
-    public AbstractConfigurationEntryHandler(String extension) {
-        super("/jcr_root/(?:apps|libs)/.+/config(\\.([^/]+))?/.+\\." + extension);
-    }
-
     @Override
     public final void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter) throws Exception {
         String pid = entry.getName().substring(0, entry.getName().lastIndexOf('.'));
@@ -45,11 +46,16 @@ abstract class AbstractConfigurationEntryHandler extends AbstractRegexEntryHandl
             id = pid;
         }
 
-        logger.info("Processing configuration '{}'.", id);
+        logger.debug("Processing configuration '{}'.", id);
 
         Dictionary<String, Object> configurationProperties;
-        try (InputStream input = archive.openInputStream(entry)) {
-            configurationProperties = parseConfiguration(id, input);
+        ConfigurationsCache configurationsCache = converter.getConfigurationsCache();
+        if (configurationsCache == null) {
+            try (InputStream input = archive.openInputStream(entry)) {
+                configurationProperties = parseConfiguration(id, input);
+            }
+        } else {
+            configurationProperties = parseConfiguration(id, archive, entry, configurationsCache);
         }
 
         if (configurationProperties == null) {
@@ -80,6 +86,45 @@ abstract class AbstractConfigurationEntryHandler extends AbstractRegexEntryHandl
         converter.getFeaturesManager().addConfiguration(runMode, id, configurationProperties);
     }
 
+    private Dictionary<String, Object> parseConfiguration(String id,
+                                                         Archive archive,
+                                                         Entry entry,
+                                                         ConfigurationsCache configurationsCache) throws Exception {
+        // same parser, same PID, same bytes -> same result
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(getClass().getName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(id.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        // the digest is streamed, the entry is never held in memory: on a cache miss it is just read again
+        try (InputStream input = new DigestInputStream(archive.openInputStream(entry), digest)) {
+            StreamUtils.copy(input, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+
+        Dictionary<String, Object> configurationProperties = configurationsCache.get(key.toString());
+        if (configurationProperties != null) {
+            logger.debug("Configuration '{}' already parsed, reusing the cached properties.", id);
+            return configurationProperties;
+        }
+
+        try (InputStream input = archive.openInputStream(entry)) {
+            configurationProperties = parseConfiguration(id, input);
+        }
+
+        // entries not containing a valid configuration are not cached, they are rare and handled as regular resources
+        if (configurationProperties != null) {
+            configurationsCache.put(key.toString(), configurationProperties);
+        }
+
+        return configurationProperties;
+    }
+
     protected abstract Dictionary<String, Object> parseConfiguration(String name, InputStream input) throws Exception;
 
 }
@@ -16,51 +16,47 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
-
-import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
+import org.apache.sling.feature.cpconverter.vltpkg.NestedArchive;
 
+@EntryHandlerPattern("/jcr_root/etc/packages/.+\\.zip")
 public abstract class AbstractContentPackageHandler extends AbstractRegexEntryHandler {
 
-    private final File temporaryDir = new File(System.getProperty("java.io.tmpdir"), "sub-content-packages");
-
-    public AbstractContentPackageHandler() {
-        super("/jcr_root/etc/packages/.+\\.zip");
-        temporaryDir.mkdirs();
-    }
-
     @Override
     public final void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
             throws Exception {
-        logger.info("Processing sub-content package '{}'...", entry.getName());
-
-        File temporaryContentPackage = new File(temporaryDir, entry.getName());
+        if (!isSubContentPackageAccepted(path, archive, entry, converter)) {
+            logger.info("Sub-content package '{}' is not accepted, so it won't be extracted nor processed", entry.getName());
+            return;
+        }
 
-        if (!temporaryContentPackage.exists()) {
-            logger.debug("Extracting sub-content package '{}' to {} for future analysis...", entry.getName(), temporaryContentPackage);
+        logger.info("Processing sub-content package '{}'...", entry.getName());
 
-            try (InputStream input = archive.openInputStream(entry);
-                    OutputStream output = new FileOutputStream(temporaryContentPackage)) {
-                IOUtils.copy(input, output);
-            }
+        // read straight from the parent archive, no need to extract it first
+        NestedArchive nestedArchive = NestedArchive.read(archive, entry);
 
-            logger.debug("Sub-content package '{}' successfully extracted to {} ", entry.getName(), temporaryContentPackage);
-        }
+        logger.debug("Sub-content package '{}' read {}", entry.getName(), nestedArchive.isInMemory() ? "in memory" : "to " + nestedArchive);
 
-        try (VaultPackage vaultPackage = converter.open(temporaryContentPackage)) {
+        try (VaultPackage vaultPackage = converter.open(nestedArchive)) {
             processSubPackage(path, vaultPackage, converter);
+        } finally {
+            nestedArchive.release();
         }
 
         logger.info("Sub-content package '{}' processing is over", entry.getName());
     }
 
+    /**
+     * Cheap check performed before the sub-content package is extracted and opened.
+     */
+    protected boolean isSubContentPackageAccepted(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
+            throws Exception {
+        return true;
+    }
+
     protected abstract void processSubPackage(String path, VaultPackage contentPackage, ContentPackage2FeatureModelConverter converter) throws Exception;
 
 }
@@ -27,8 +27,15 @@ abstract class AbstractRegexEntryHandler implements EntryHandler {
 
     private final Pattern pattern;
 
-    public AbstractRegexEntryHandler(String regex) {
-        this(Pattern.compile(regex));
+    /**
+     * Matches the pattern declared by the {@link EntryHandlerPattern} annotation.
+     */
+    public AbstractRegexEntryHandler() {
+        EntryHandlerPattern entryHandlerPattern = getClass().getAnnotation(EntryHandlerPattern.class);
+        if (entryHandlerPattern == null) {
+            throw new IllegalStateException(getClass().getName() + " does not declare the " + EntryHandlerPattern.class.getSimpleName() + " it matches");
+        }
+        this.pattern = Pattern.compile(entryHandlerPattern.value());
     }
 
     public AbstractRegexEntryHandler(Pattern pattern) {
@@ -35,6 +35,7 @@ import org.apache.sling.feature.cpconverter.artifacts.InputStreamArtifactWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@EntryHandlerPattern("/jcr_root/(?:apps|libs)/.+/install(\\.([^/]+))?/.+\\.jar")
 public final class BundleEntryHandler extends AbstractRegexEntryHandler {
 
     private static final String NAME_GROUP_ID = "groupId";
@@ -55,13 +56,9 @@ public final class BundleEntryHandler extends AbstractRegexEntryHandler {
 
     private final Pattern pomPropertiesPattern = Pattern.compile("META-INF/maven/[^/]+/[^/]+/pom.properties");
 
-    public BundleEntryHandler() {
-        super("/jcr_root/(?:apps|libs)/.+/install(\\.([^/]+))?/.+\\.jar");
-    }
-
     @Override
     public void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter) throws Exception {
-        logger.info("Processing bundle {}...", entry.getName());
+        logger.debug("Processing bundle {}...", entry.getName());
 
         String groupId;
         String artifactId;
@@ -136,7 +133,7 @@ public final class BundleEntryHandler extends AbstractRegexEntryHandler {
             String nextEntryName = jarEntry.getName();
 
             if (pomPropertiesPattern.matcher(nextEntryName).matches()) {
-                logger.info("Reading '{}' bundle GAV from {}...", bundleName, nextEntryName);
+                logger.debug("Reading '{}' bundle GAV from {}...", bundleName, nextEntryName);
 
                 properties.load(jarInput);
 
@@ -158,13 +155,7 @@ public final class BundleEntryHandler extends AbstractRegexEntryHandler {
                         String suffix = bundleName.substring(synthesized.length());
                         if (suffix.length() > 1 && suffix.startsWith("-")) {
                             String classifier = suffix.substring(1);
-                            logger.info("Inferred classifier of '"
-                                        + artifactId
-                                        + ":"
-                                        + version
-                                        + "' to be '"
-                                        + classifier
-                                        + "'");
+                            logger.debug("Inferred classifier of '{}:{}' to be '{}'", artifactId, version, classifier);
                             properties.setProperty(NAME_CLASSIFIER, classifier);
                         }
                     }
@@ -21,12 +21,9 @@ import java.util.Dictionary;
 
 import org.apache.felix.cm.file.ConfigurationHandler;
 
+@EntryHandlerPattern("/jcr_root/(?:apps|libs)/.+/config(\\.([^/]+))?/.+\\.config")
 public final class ConfigurationEntryHandler extends AbstractConfigurationEntryHandler {
 
-    public ConfigurationEntryHandler() {
-        super("config");
-    }
-
     @Override
     @SuppressWarnings("unchecked")
     protected Dictionary<String, Object> parseConfiguration(String name, InputStream input) throws Exception {
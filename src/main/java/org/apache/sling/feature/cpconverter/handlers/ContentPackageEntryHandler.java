@@ -16,11 +16,19 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
 
 public final class ContentPackageEntryHandler extends AbstractContentPackageHandler {
 
+    @Override
+    protected boolean isSubContentPackageAccepted(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter) {
+        // superseded versions have been already detected during the recollection phase
+        return converter.isSubContentPackageIncluded(path);
+    }
+
     @Override
     protected void processSubPackage(String path, VaultPackage contentPackage, ContentPackage2FeatureModelConverter converter)
             throws Exception {
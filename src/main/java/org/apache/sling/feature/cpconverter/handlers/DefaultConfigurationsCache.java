@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.handlers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.apache.sling.feature.cpconverter.features.ConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class DefaultConfigurationsCache implements ConfigurationsCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     * Bumped each time the parsed values, or the way they are stored, change: entries stored by other versions are ignored.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String STORED_CONFIGURATION_EXTENSION = "-v" + FORMAT_VERSION + ".json";
+
+    private static final String VERSION = "version";
+
+    private static final String PROPERTIES = "properties";
+
+    private static final String NAME = "name";
+
+    private static final String TYPE = "type";
+
+    private static final String VALUE = "value";
+
+    private static final String VALUES = "values";
+
+    private static final String ARRAY_SUFFIX = "[]";
+
+    private static final String OBJECT_ARRAY = "Object[]";
+
+    private static final String NULL = "null";
+
+    // the only value types stored on disk, as plain text, no class is ever loaded from the cache
+    private static final Map<String, Class<?>> TYPES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[] {
+                String.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+                Character.class, BigInteger.class, BigDecimal.class,
+                boolean.class, byte.class, short.class, int.class, long.class, float.class, double.class, char.class }) {
+            TYPES.put(type.getSimpleName(), type);
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Map<String, Object>> configurations;
+
+    private final File storeDirectory;
+
+    public DefaultConfigurationsCache() {
+        this(DEFAULT_MAX_ENTRIES, null);
+    }
+
+    public DefaultConfigurationsCache(File storeDirectory) {
+        this(DEFAULT_MAX_ENTRIES, storeDirectory);
+    }
+
+    public DefaultConfigurationsCache(final int maxEntries, File storeDirectory) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Configurations cache size must be a positive number, " + maxEntries + " is not allowed");
+        }
+
+        configurations = new LinkedHashMap<String, Map<String, Object>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 6170427285245367426L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Map<String, Object>> eldest) {
+                return size() > maxEntries;
+            }
+
+        };
+
+        this.storeDirectory = storeDirectory;
+        if (storeDirectory != null && !storeDirectory.exists()) {
+            storeDirectory.mkdirs();
+        }
+    }
+
+    @Override
+    public synchronized Dictionary<String, Object> get(String key) {
+        Map<String, Object> configuration = configurations.get(key);
+
+        if (configuration == null && storeDirectory != null) {
+            configuration = load(key);
+            if (configuration != null) {
+                configurations.put(key, configuration);
+            }
+        }
+
+        if (configuration == null) {
+            return null;
+        }
+
+        // always hand out a copy, the caller is free to modify it
+        Dictionary<String, Object> copy = new ConfigurationProperties(configuration.size());
+        for (Entry<String, Object> property : configuration.entrySet()) {
+            copy.put(property.getKey(), property.getValue());
+        }
+        return copy;
+    }
+
+    @Override
+    public synchronized void put(String key, Dictionary<String, Object> configuration) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        Enumeration<String> keys = configuration.keys();
+        while (keys.hasMoreElements()) {
+            String property = keys.nextElement();
+            copy.put(property, configuration.get(property));
+        }
+
+        configurations.put(key, copy);
+
+        if (storeDirectory != null) {
+            store(key, copy);
+        }
+    }
+
+    private Map<String, Object> load(String key) {
+        File storedConfiguration = new File(storeDirectory, key + STORED_CONFIGURATION_EXTENSION);
+        if (!storedConfiguration.isFile()) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(storedConfiguration.toPath(), UTF_8);
+                JsonReader jsonReader = Json.createReader(reader)) {
+            JsonObject stored = jsonReader.readObject();
+            if (stored.getInt(VERSION, -1) != FORMAT_VERSION) {
+                return null;
+            }
+
+            Map<String, Object> configuration = new LinkedHashMap<>();
+            for (JsonValue property : stored.getJsonArray(PROPERTIES)) {
+                JsonObject jsonProperty = (JsonObject) property;
+                configuration.put(jsonProperty.getString(NAME), decode(jsonProperty));
+            }
+            return configuration;
+        } catch (Exception e) {
+            // a corrupted/incompatible entry is just a cache miss
+            logger.warn("Impossible to read cached configuration {}, it will be parsed again: {}", storedConfiguration, e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, Map<String, Object> configuration) {
+        File storedConfiguration = new File(storeDirectory, key + STORED_CONFIGURATION_EXTENSION);
+        if (storedConfiguration.exists()) {
+            return;
+        }
+
+        JsonArrayBuilder properties = Json.createArrayBuilder();
+        for (Entry<String, Object> property : configuration.entrySet()) {
+            JsonObjectBuilder jsonProperty = encode(property.getValue());
+            if (jsonProperty == null) {
+                // not a plain OSGi configuration value, kept in memory only
+                logger.debug("Configuration {} property '{}' can not be stored, {} type is not supported",
+                             key, property.getKey(), property.getValue().getClass());
+                return;
+            }
+            properties.add(jsonProperty.add(NAME, property.getKey()));
+        }
+
+        File temporaryConfiguration = null;
+        try {
+            // write aside and move, concurrent runs sharing the same directory never see partial entries
+            temporaryConfiguration = File.createTempFile("." + key + '-', ".tmp", storeDirectory);
+            try (Writer writer = Files.newBufferedWriter(temporaryConfiguration.toPath(), UTF_8)) {
+                writer.write(Json.createObjectBuilder()
+                                 .add(VERSION, FORMAT_VERSION)
+                                 .add(PROPERTIES, properties)
+                                 .build()
+                                 .toString());
+            }
+            Files.move(temporaryConfiguration.toPath(), storedConfiguration.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Impossible to store configuration {} to {}: {}", key, storeDirectory, e.getMessage());
+        } finally {
+            if (temporaryConfiguration != null && temporaryConfiguration.exists()) {
+                temporaryConfiguration.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the typed, textual, representation of the value, null if the value type is not supported
+     */
+    private static JsonObjectBuilder encode(Object value) {
+        if (value == null) {
+            return Json.createObjectBuilder().add(TYPE, NULL);
+        }
+
+        Class<?> type = value.getClass();
+        if (TYPES.get(type.getSimpleName()) == type) {
+            return Json.createObjectBuilder().add(TYPE, type.getSimpleName()).add(VALUE, value.toString());
+        }
+
+        if (!type.isArray()) {
+            return null;
+        }
+
+        Class<?> componentType = type.getComponentType();
+        JsonArrayBuilder values = Json.createArrayBuilder();
+        int length = Array.getLength(value);
+
+        if (componentType == Object.class) {
+            for (int i = 0; i < length; i++) {
+                JsonObjectBuilder element = encode(Array.get(value, i));
+                if (element == null) {
+                    return null;
+                }
+                values.add(element);
+            }
+            return Json.createObjectBuilder().add(TYPE, OBJECT_ARRAY).add(VALUES, values);
+        }
+
+        if (TYPES.get(componentType.getSimpleName()) != componentType) {
+            return null;
+        }
+
+        for (int i = 0; i < length; i++) {
+            Object element = Array.get(value, i);
+            if (element == null) {
+                return null;
+            }
+            values.add(element.toString());
+        }
+        return Json.createObjectBuilder().add(TYPE, componentType.getSimpleName() + ARRAY_SUFFIX).add(VALUES, values);
+    }
+
+    private static Object decode(JsonObject encoded) {
+        String type = encoded.getString(TYPE);
+
+        if (NULL.equals(type)) {
+            return null;
+        }
+
+        if (OBJECT_ARRAY.equals(type)) {
+            JsonArray values = encoded.getJsonArray(VALUES);
+            Object[] array = new Object[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = decode(values.getJsonObject(i));
+            }
+            return array;
+        }
+
+        if (type.endsWith(ARRAY_SUFFIX)) {
+            Class<?> componentType = getType(type.substring(0, type.length() - ARRAY_SUFFIX.length()));
+            JsonArray values = encoded.getJsonArray(VALUES);
+            Object array = Array.newInstance(componentType, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Array.set(array, i, parse(componentType, values.getString(i)));
+            }
+            return array;
+        }
+
+        return parse(getType(type), encoded.getString(VALUE));
+    }
+
+    private static Class<?> getType(String name) {
+        Class<?> type = TYPES.get(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unsupported stored value type " + name);
+        }
+        return type;
+    }
+
+    private static Object parse(Class<?> type, String value) {
+        if (String.class == type) {
+            return value;
+        }
+        if (Boolean.class == type || boolean.class == type) {
+            return Boolean.valueOf(value);
+        }
+        if (Byte.class == type || byte.class == type) {
+            return Byte.valueOf(value);
+        }
+        if (Short.class == type || short.class == type) {
+            return Short.valueOf(value);
+        }
+        if (Integer.class == type || int.class == type) {
+            return Integer.valueOf(value);
+        }
+        if (Long.class == type || long.class == type) {
+            return Long.valueOf(value);
+        }
+        if (Float.class == type || float.class == type) {
+            return Float.valueOf(value);
+        }
+        if (Double.class == type || double.class == type) {
+            return Double.valueOf(value);
+        }
+        if (Character.class == type || char.class == type) {
+            if (value.length() != 1) {
+                throw new IllegalArgumentException("'" + value + "' is not a valid character");
+            }
+            return value.charAt(0);
+        }
+        if (BigInteger.class == type) {
+            return new BigInteger(value);
+        }
+        return new BigDecimal(value);
+    }
+
+}
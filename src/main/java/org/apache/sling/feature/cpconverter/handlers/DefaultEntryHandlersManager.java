@@ -16,22 +16,44 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
-import java.util.Iterator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ServiceLoader;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
+import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
+
+/**
+ * Discovers the {@link EntryHandler}s listed in <code>META-INF/services</code>, preserving their order:
+ * handlers annotated with {@link EntryHandlerPattern} are instantiated on the first matching entry only,
+ * so their dependencies are not loaded when the converted packages don't need them.
+ */
 public class DefaultEntryHandlersManager implements EntryHandlersManager {
 
+    private static final String SERVICES_RESOURCE = "META-INF/services/" + EntryHandler.class.getName();
+
     private final List<EntryHandler> entryHandlers = new LinkedList<>();
 
     public DefaultEntryHandlersManager() {
-        ServiceLoader<EntryHandler> entryHandlersLoader = ServiceLoader.load(EntryHandler.class);
-        Iterator<EntryHandler> entryHandlersIterator = entryHandlersLoader.iterator();
-        while (entryHandlersIterator.hasNext()) {
-            EntryHandler entryHandler = entryHandlersIterator.next();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = getClass().getClassLoader();
+        }
 
-            addEntryHandler(entryHandler);
+        for (String className : readServiceClassNames(classLoader)) {
+            addEntryHandler(newEntryHandler(className, classLoader));
         }
     }
 
@@ -46,6 +68,9 @@ public class DefaultEntryHandlersManager implements EntryHandlersManager {
     public EntryHandler getEntryHandlerByEntryPath(String path) {
         for (EntryHandler entryHandler : entryHandlers) {
             if (entryHandler.matches(path)) {
+                if (entryHandler instanceof LazyEntryHandler) {
+                    return ((LazyEntryHandler) entryHandler).getEntryHandler();
+                }
                 return entryHandler;
             }
         }
@@ -53,4 +78,97 @@ public class DefaultEntryHandlersManager implements EntryHandlersManager {
         return null;
     }
 
+    private static Set<String> readServiceClassNames(ClassLoader classLoader) {
+        Set<String> classNames = new LinkedHashSet<>();
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SERVICES_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+
+                try (InputStream input = resource.openStream();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int commentIndex = line.indexOf('#');
+                        if (commentIndex != -1) {
+                            line = line.substring(0, commentIndex);
+                        }
+                        line = line.trim();
+
+                        if (!line.isEmpty()) {
+                            classNames.add(line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ServiceConfigurationError("Impossible to read " + SERVICES_RESOURCE + " resources", e);
+        }
+
+        return classNames;
+    }
+
+    private static EntryHandler newEntryHandler(String className, ClassLoader classLoader) {
+        Class<? extends EntryHandler> handlerClass;
+        try {
+            // not initialized, static dependencies are not loaded yet
+            handlerClass = Class.forName(className, false, classLoader).asSubclass(EntryHandler.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new ServiceConfigurationError(className + " is not a valid " + EntryHandler.class.getName(), e);
+        }
+
+        EntryHandlerPattern entryHandlerPattern = handlerClass.getAnnotation(EntryHandlerPattern.class);
+        if (entryHandlerPattern != null) {
+            return new LazyEntryHandler(handlerClass, Pattern.compile(entryHandlerPattern.value()));
+        }
+
+        return instantiate(handlerClass);
+    }
+
+    private static EntryHandler instantiate(Class<? extends EntryHandler> handlerClass) {
+        try {
+            return handlerClass.getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new ServiceConfigurationError("Impossible to instantiate " + handlerClass.getName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new ServiceConfigurationError("Impossible to instantiate " + handlerClass.getName(), e);
+        }
+    }
+
+    /**
+     * Matches by the declared pattern, the actual handler is created on first use.
+     */
+    private static final class LazyEntryHandler implements EntryHandler {
+
+        private final Class<? extends EntryHandler> handlerClass;
+
+        private final Pattern pattern;
+
+        private EntryHandler entryHandler;
+
+        public LazyEntryHandler(Class<? extends EntryHandler> handlerClass, Pattern pattern) {
+            this.handlerClass = handlerClass;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(String path) {
+            return pattern.matcher(path).matches();
+        }
+
+        @Override
+        public void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter) throws Exception {
+            getEntryHandler().handle(path, archive, entry, converter);
+        }
+
+        public synchronized EntryHandler getEntryHandler() {
+            if (entryHandler == null) {
+                entryHandler = instantiate(handlerClass);
+            }
+            return entryHandler;
+        }
+
+    }
+
 }
@@ -16,60 +16,126 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
+import static org.apache.johnzon.core.JsonParserFactoryImpl.SUPPORTS_COMMENTS;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringWriter;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.felix.configurator.impl.json.JSONUtil;
 import org.apache.felix.configurator.impl.json.TypeConverter;
-import org.apache.felix.configurator.impl.model.ConfigurationFile;
+import org.apache.sling.feature.cpconverter.features.ConfigurationProperties;
 
+@EntryHandlerPattern("/jcr_root/(?:apps|libs)/.+/config(\\.([^/]+))?/.+\\.cfg\\.json")
 public final class JsonConfigurationEntryHandler extends AbstractConfigurationEntryHandler {
 
-    public JsonConfigurationEntryHandler() {
-        super("cfg\\.json");
-    }
+    private static final String CONFIGURATOR_PREFIX = ":configurator:";
+
+    // comments are allowed in configurator JSON files, as JSMin used to strip them
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(Collections.singletonMap(SUPPORTS_COMMENTS, true));
+
+    private final TypeConverter typeConverter = new TypeConverter(null);
 
     @Override
     protected Dictionary<String, Object> parseConfiguration(String name, InputStream input) throws Exception {
-        StringBuilder content = new StringBuilder()
-                                .append("{ \"")
-                                .append(name)
-                                .append("\" : ");
-        try (Reader reader = new InputStreamReader(input); StringWriter writer = new StringWriter()) {
-            IOUtils.copy(reader, writer);
-            content.append(writer.toString());
-        }
-        content.append("}");
-
-        JSONUtil.Report report = new JSONUtil.Report();
-        ConfigurationFile configuration = JSONUtil.readJSON(new TypeConverter(null),
-                                                            name,
-                                                            new URL("file://content-package/" + name),
-                                                            0,
-                                                            content.toString(),
-                                                            report);
-
-        if (!report.errors.isEmpty() || !report.warnings.isEmpty()) {
-            final StringBuilder builder = new StringBuilder();
-            builder.append("Errors in configuration:");
-            for (final String w : report.warnings) {
-                builder.append("\n");
-                builder.append(w);
+        Dictionary<String, Object> configuration = new ConfigurationProperties();
+        List<String> errors = new LinkedList<>();
+
+        try (JsonParser parser = PARSER_FACTORY.createParser(input)) {
+            if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+                throw new IOException("Errors in configuration:\nIgnoring configuration in '"
+                                      + name
+                                      + "' (not a configuration)");
             }
-            for (final String e : report.errors) {
-                builder.append("\n");
-                builder.append(e);
+
+            while (parser.next() != Event.END_OBJECT) {
+                // the only allowed events on the root object level are keys
+                String key = parser.getString();
+                Object value = readValue(parser, parser.next());
+
+                if (key.startsWith(CONFIGURATOR_PREFIX) || value == null) {
+                    continue;
+                }
+
+                String propertyName = key;
+                String typeInfo = null;
+                int separatorIndex = key.indexOf(':');
+                if (separatorIndex != -1) {
+                    propertyName = key.substring(0, separatorIndex);
+                    typeInfo = key.substring(separatorIndex + 1);
+                }
+
+                try {
+                    configuration.put(propertyName, JSONUtil.getTypedValue(typeConverter, name, value, typeInfo));
+                } catch (IOException e) {
+                    errors.add("Invalid value/type for configuration in '" + name + "' : " + key + " - " + e.getMessage());
+                }
+            }
+        } catch (JsonException e) {
+            throw new IOException("Errors in configuration:\nInvalid JSON in '" + name + "' : " + e.getMessage(), e);
+        }
+
+        if (!errors.isEmpty()) {
+            StringBuilder builder = new StringBuilder("Errors in configuration:");
+            for (String error : errors) {
+                builder.append('\n').append(error);
             }
             throw new IOException(builder.toString());
         }
 
-        return configuration.getConfigurations().get(0).getProperties();
+        return configuration;
+    }
+
+    // builds the same raw structures as JSONUtil.getValue(JsonValue) without materializing the JsonObject tree
+    private static Object readValue(JsonParser parser, Event event) {
+        switch (event) {
+            case VALUE_STRING:
+                return parser.getString();
+
+            case VALUE_NUMBER:
+                if (parser.isIntegralNumber()) {
+                    return parser.getLong();
+                }
+                return parser.getBigDecimal().doubleValue();
+
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+
+            case START_ARRAY:
+                List<Object> array = new ArrayList<>();
+                Event current;
+                while ((current = parser.next()) != Event.END_ARRAY) {
+                    array.add(readValue(parser, current));
+                }
+                return array;
+
+            case START_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                while (parser.next() != Event.END_OBJECT) {
+                    String key = parser.getString();
+                    object.put(key, readValue(parser, parser.next()));
+                }
+                return object;
+
+            default:
+                // VALUE_NULL
+                return null;
+        }
     }
 
 }
@@ -24,10 +24,11 @@ import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
 
+@EntryHandlerPattern("/META-INF/vault/nodetypes\\.cnd")
 public class NodeTypesEntryHandler extends AbstractRegexEntryHandler {
 
     public NodeTypesEntryHandler() {
-        super("/META-INF/vault/nodetypes\\.cnd");
+        super();
     }
 
     public NodeTypesEntryHandler(Pattern pattern) {
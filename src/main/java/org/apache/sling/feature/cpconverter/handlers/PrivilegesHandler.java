@@ -27,6 +27,7 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+@EntryHandlerPattern("META-INF/vault/privileges\\.xml")
 public class PrivilegesHandler extends AbstractRegexEntryHandler {
 
     private static final String PRIVILEGE = "privilege";
@@ -35,10 +36,6 @@ public class PrivilegesHandler extends AbstractRegexEntryHandler {
 
     private final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 
-    public PrivilegesHandler() {
-        super("META-INF/vault/privileges\\.xml");
-    }
-
     @Override
     public void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
             throws Exception {
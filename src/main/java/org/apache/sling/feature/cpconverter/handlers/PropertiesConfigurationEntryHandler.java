@@ -20,14 +20,12 @@ import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Properties;
 
-public final class PropertiesConfigurationEntryHandler extends AbstractConfigurationEntryHandler {
+import org.apache.sling.feature.cpconverter.features.ConfigurationProperties;
 
-    public PropertiesConfigurationEntryHandler() {
-        super("(cfg|properties)");
-    }
+@EntryHandlerPattern("/jcr_root/(?:apps|libs)/.+/config(\\.([^/]+))?/.+\\.(cfg|properties)")
+public final class PropertiesConfigurationEntryHandler extends AbstractConfigurationEntryHandler {
 
     @Override
     protected Dictionary<String, Object> parseConfiguration(String name, InputStream input) throws Exception {
@@ -47,7 +45,7 @@ public final class PropertiesConfigurationEntryHandler extends AbstractConfigura
             }
         }
 
-        Dictionary<String, Object> configuration = new Hashtable<>();
+        Dictionary<String, Object> configuration = new ConfigurationProperties(properties.size());
         final Enumeration<Object> i = properties.keys();
         while (i.hasMoreElements()) {
             final Object key = i.nextElement();
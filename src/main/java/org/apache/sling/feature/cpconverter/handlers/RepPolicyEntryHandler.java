@@ -33,12 +33,9 @@ import org.apache.sling.feature.cpconverter.shared.AbstractJcrNodeParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+@EntryHandlerPattern("/jcr_root(/.+)/_rep_policy.xml")
 public final class RepPolicyEntryHandler extends AbstractRegexEntryHandler {
 
-    public RepPolicyEntryHandler() {
-        super("/jcr_root(/.+)/_rep_policy.xml");
-    }
-
     @Override
     public void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
             throws Exception {
@@ -24,12 +24,9 @@ import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter
 import org.apache.sling.feature.cpconverter.shared.AbstractJcrNodeParser;
 import org.xml.sax.Attributes;
 
+@EntryHandlerPattern("/jcr_root/home/users/.*/\\.content.xml")
 public final class SystemUsersEntryHandler extends AbstractRegexEntryHandler {
 
-    public SystemUsersEntryHandler() {
-        super("/jcr_root/home/users/.*/\\.content.xml");
-    }
-
     @Override
     public void handle(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
             throws Exception {
@@ -16,74 +16,57 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
-import java.util.Map;
+import java.io.InputStream;
 
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
 import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
+import org.apache.sling.feature.cpconverter.vltpkg.PackagePropertiesReader;
 import org.apache.sling.feature.cpconverter.vltpkg.RecollectorVaultPackageScanner;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.sling.feature.cpconverter.vltpkg.SubContentPackagesResolver;
 
 public final class VersionResolverContentPackageEntryHandler extends AbstractContentPackageHandler {
 
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
     private final RecollectorVaultPackageScanner scanner;
 
-    private final Map<PackageId, String> subContentPackages;
+    private final SubContentPackagesResolver subContentPackagesResolver;
 
-    public VersionResolverContentPackageEntryHandler(RecollectorVaultPackageScanner scanner, Map<PackageId, String> subContentPackages) {
+    public VersionResolverContentPackageEntryHandler(RecollectorVaultPackageScanner scanner, SubContentPackagesResolver subContentPackagesResolver) {
         this.scanner = scanner;
-        this.subContentPackages = subContentPackages;
+        this.subContentPackagesResolver = subContentPackagesResolver;
     }
 
     @Override
-    protected void processSubPackage(String path, VaultPackage contentPackage, ContentPackage2FeatureModelConverter converter)
+    protected boolean isSubContentPackageAccepted(String path, Archive archive, Entry entry, ContentPackage2FeatureModelConverter converter)
             throws Exception {
+        PackageId currentId;
+        try (InputStream input = archive.openInputStream(entry)) {
+            currentId = PackagePropertiesReader.readPackageId(input);
+        }
 
-        boolean addPackage = false;
-        PackageId currentId = contentPackage.getId();
-
-        logger.info("Checking if other {}:{} content-package versions were handled already", currentId.getGroup(), currentId.getName());
-
-        PackageId olderId = getPackage(currentId);
-
-        if (olderId != null) {
-            logger.info("Comparing {}:{} package versions: current one is {}, previous one is {} ",
-                        currentId.getGroup(), currentId.getName(), currentId.getVersionString(), olderId.getVersionString());
-
-            addPackage = currentId.compareTo(olderId) > 0;
-
-            if (addPackage) {
-                logger.info("Replacing version {} of content-package {}:{} with version {}",
-                            olderId.getVersionString(), currentId.getGroup(), currentId.getName(), currentId.getVersionString());
-
-                subContentPackages.remove(olderId);
-            }
-        } else {
-            logger.info("There were not other version of {}:{} content-package", currentId.getGroup(), currentId.getName());
+        if (currentId == null) {
+            // let the full package parsing deal with it
+            return true;
+        }
 
-            addPackage = true;
+        PackageId latestId = subContentPackagesResolver.getLatestVersion(currentId.getGroup(), currentId.getName());
+        if (latestId != null && currentId.compareTo(latestId) <= 0) {
+            logger.info("Content-package {} is superseded by already detected version {}", currentId, latestId.getVersionString());
+            return false;
         }
 
-        if (addPackage) {
-            subContentPackages.put(currentId, path);
+        return true;
+    }
 
+    @Override
+    protected void processSubPackage(String path, VaultPackage contentPackage, ContentPackage2FeatureModelConverter converter)
+            throws Exception {
+        if (subContentPackagesResolver.resolve(contentPackage.getId(), path)) {
             // iteratively traverse the sub(-sub)*content-packages
             scanner.traverse(contentPackage);
         }
     }
 
-    private PackageId getPackage(PackageId expectedId) {
-        for (PackageId currentId : subContentPackages.keySet()) {
-            if (expectedId.getGroup().equals(currentId.getGroup())
-                    && expectedId.getName().equals(currentId.getName())) {
-                return currentId;
-            }
-        }
-
-        return null;
-    }
-
 }
@@ -18,19 +18,16 @@ package org.apache.sling.feature.cpconverter.handlers;
 
 import java.io.InputStream;
 import java.util.Dictionary;
-import java.util.Hashtable;
 
 import org.apache.jackrabbit.vault.util.DocViewProperty;
+import org.apache.sling.feature.cpconverter.features.ConfigurationProperties;
 import org.apache.sling.feature.cpconverter.shared.AbstractJcrNodeParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+@EntryHandlerPattern("/jcr_root/(?:apps|libs)/.+/config(\\.([^/]+))?/.+\\.xml")
 public final class XmlConfigurationEntryHandler extends AbstractConfigurationEntryHandler {
 
-    public XmlConfigurationEntryHandler() {
-        super("xml");
-    }
-
     @Override
     protected Dictionary<String, Object> parseConfiguration(String name, InputStream input) throws Exception {
         JcrConfigurationHandler configurationHandler = new JcrConfigurationHandler();
@@ -54,7 +51,7 @@ public final class XmlConfigurationEntryHandler extends AbstractConfigurationEnt
 
         @Override
         protected void onJcrRootElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-            configuration = new Hashtable<>();
+            configuration = new ConfigurationProperties(attributes.getLength());
 
             for (int i = 0; i < attributes.getLength(); i++) {
                 String attributeQName = attributes.getQName(i);
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.PrintStream;
+
+/**
+ * Renders a single-line progress bar, i.e.
+ * <code>[==========>         ]  52% 5200/10000 entries 1.2/2.3 GB ETA 3m 12s my_packages:my-app:1.0.0</code>
+ */
+public final class ConsoleProgressBar implements ProgressListener {
+
+    private static final int WIDTH = 30;
+
+    private final PrintStream out;
+
+    public ConsoleProgressBar(PrintStream out) {
+        this.out = requireNonNull(out, "Null stream can not be used to render the progress bar");
+    }
+
+    @Override
+    public synchronized void onProgress(ProgressEvent event) {
+        switch (event.getType()) {
+            case PHASE_CHANGED:
+                out.print('\r');
+                out.println(event.getPhase() + (event.getPackageId() != null ? " " + event.getPackageId() : ""));
+                break;
+
+            case ENTRY_PROCESSED:
+                out.print('\r');
+                out.print(render(event));
+                out.flush();
+                break;
+
+            case PACKAGE_COMPLETED:
+                out.print('\r');
+                out.println(render(event));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    static String render(ProgressEvent event) {
+        StringBuilder line = new StringBuilder();
+
+        double ratio = event.getBytesTotal() > 0 ? (double) event.getBytesProcessed() / event.getBytesTotal()
+                       : event.getEntriesTotal() > 0 ? (double) event.getEntriesProcessed() / event.getEntriesTotal()
+                       : 0;
+        ratio = Math.min(1, ratio);
+
+        int filled = (int) (ratio * WIDTH);
+        line.append('[');
+        for (int i = 0; i < WIDTH; i++) {
+            line.append(i < filled ? '=' : i == filled ? '>' : ' ');
+        }
+        line.append(']');
+
+        line.append(String.format(" %3d%% %d", (int) (ratio * 100), event.getEntriesProcessed()));
+        if (event.getEntriesTotal() > 0) {
+            line.append('/').append(event.getEntriesTotal());
+        }
+        line.append(" entries");
+
+        if (event.getBytesTotal() > 0) {
+            line.append(' ')
+                .append(formatBytes(event.getBytesProcessed()))
+                .append('/')
+                .append(formatBytes(event.getBytesTotal()));
+        }
+
+        if (event.getEta() >= 0) {
+            line.append(" ETA ").append(formatDuration(event.getEta()));
+        }
+
+        if (event.getPackageId() != null) {
+            line.append(' ').append(event.getPackageId());
+        }
+
+        return line.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        int unit = (int) (Math.log(bytes) / Math.log(1024));
+        return String.format("%.1f %sB", bytes / Math.pow(1024, unit), "KMGTPE".charAt(unit - 1));
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        if (seconds < 3600) {
+            return (seconds / 60) + "m " + (seconds % 60) + "s";
+        }
+        return (seconds / 3600) + "h " + ((seconds % 3600) / 60) + "m";
+    }
+
+}
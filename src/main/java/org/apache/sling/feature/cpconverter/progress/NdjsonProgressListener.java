@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Writes each event as a JSON object on its own line, for machine consumption.
+ */
+public final class NdjsonProgressListener implements ProgressListener {
+
+    private final Writer writer;
+
+    public NdjsonProgressListener(Writer writer) {
+        this.writer = requireNonNull(writer, "Null writer can not be used to stream progress events");
+    }
+
+    @Override
+    public synchronized void onProgress(ProgressEvent event) {
+        try {
+            writer.write(toJson(event).build().toString());
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible to write the progress event " + event, e);
+        }
+    }
+
+    public static JsonObjectBuilder toJson(ProgressEvent event) {
+        JsonObjectBuilder json = Json.createObjectBuilder().add("type", event.getType().name().toLowerCase());
+
+        if (event.getPackageId() != null) {
+            json.add("package", event.getPackageId());
+        }
+        if (event.getPhase() != null) {
+            json.add("phase", event.getPhase().name().toLowerCase());
+        }
+        if (event.getPath() != null) {
+            json.add("path", event.getPath());
+        }
+        addIfKnown(json, "entriesProcessed", event.getEntriesProcessed());
+        addIfKnown(json, "entriesTotal", event.getEntriesTotal());
+        addIfKnown(json, "bytesProcessed", event.getBytesProcessed());
+        addIfKnown(json, "bytesTotal", event.getBytesTotal());
+        addIfKnown(json, "elapsed", event.getElapsed());
+        addIfKnown(json, "eta", event.getEta());
+
+        return json;
+    }
+
+    private static void addIfKnown(JsonObjectBuilder json, String name, long value) {
+        if (value >= 0) {
+            json.add(name, value);
+        }
+    }
+
+}
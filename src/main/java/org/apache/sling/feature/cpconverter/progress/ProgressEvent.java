@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+/**
+ * Immutable snapshot of the conversion progress; counters not known are <code>-1</code>.
+ */
+public final class ProgressEvent {
+
+    public enum Type {
+
+        PACKAGE_STARTED,
+
+        PHASE_CHANGED,
+
+        ENTRY_PROCESSED,
+
+        PACKAGE_COMPLETED
+
+    }
+
+    public enum Phase {
+
+        READING,
+
+        CONVERTING,
+
+        ASSEMBLING,
+
+        SERIALIZING
+
+    }
+
+    public static ProgressEvent phaseChanged(String packageId, Phase phase) {
+        return new ProgressEvent(Type.PHASE_CHANGED, packageId, phase, null, -1, -1, -1, -1, -1, -1);
+    }
+
+    private final Type type;
+
+    private final String packageId;
+
+    private final Phase phase;
+
+    private final String path;
+
+    private final long entriesProcessed;
+
+    private final long entriesTotal;
+
+    private final long bytesProcessed;
+
+    private final long bytesTotal;
+
+    private final long elapsed;
+
+    private final long eta;
+
+    ProgressEvent(Type type,
+                  String packageId,
+                  Phase phase,
+                  String path,
+                  long entriesProcessed,
+                  long entriesTotal,
+                  long bytesProcessed,
+                  long bytesTotal,
+                  long elapsed,
+                  long eta) {
+        this.type = type;
+        this.packageId = packageId;
+        this.phase = phase;
+        this.path = path;
+        this.entriesProcessed = entriesProcessed;
+        this.entriesTotal = entriesTotal;
+        this.bytesProcessed = bytesProcessed;
+        this.bytesTotal = bytesTotal;
+        this.elapsed = elapsed;
+        this.eta = eta;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPackageId() {
+        return packageId;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getEntriesProcessed() {
+        return entriesProcessed;
+    }
+
+    public long getEntriesTotal() {
+        return entriesTotal;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    /**
+     * @return the milliseconds elapsed since the package was started
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the estimated milliseconds to complete the package
+     */
+    public long getEta() {
+        return eta;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + packageId + (phase != null ? " " + phase : "") + " " + entriesProcessed + '/' + entriesTotal;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+import static java.util.Objects.requireNonNull;
+
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Type;
+
+/**
+ * Tracks the progress of a single package and notifies the listener, estimating the time to completion
+ * by the processed bytes, when known, or entries.
+ */
+public final class ProgressTracker {
+
+    private final ProgressListener listener;
+
+    private final String packageId;
+
+    private final long entriesTotal;
+
+    private final long bytesTotal;
+
+    private long start;
+
+    private long entriesProcessed;
+
+    private long bytesProcessed;
+
+    public ProgressTracker(ProgressListener listener, String packageId, long entriesTotal, long bytesTotal) {
+        this.listener = requireNonNull(listener, "Null listener can not be notified about progress");
+        this.packageId = packageId;
+        this.entriesTotal = entriesTotal;
+        this.bytesTotal = bytesTotal;
+    }
+
+    public void start() {
+        start = System.currentTimeMillis();
+        fire(Type.PACKAGE_STARTED, null);
+    }
+
+    public void entryProcessed(String path, long bytes) {
+        entriesProcessed++;
+        if (bytes > 0) {
+            bytesProcessed += bytes;
+        }
+        fire(Type.ENTRY_PROCESSED, path);
+    }
+
+    public void complete() {
+        fire(Type.PACKAGE_COMPLETED, null);
+    }
+
+    private void fire(Type type, String path) {
+        long elapsed = System.currentTimeMillis() - start;
+
+        long eta = type == Type.PACKAGE_COMPLETED ? 0
+                   : bytesTotal > 0 ? estimate(elapsed, bytesProcessed, bytesTotal)
+                   : estimate(elapsed, entriesProcessed, entriesTotal);
+
+        listener.onProgress(new ProgressEvent(type,
+                                              packageId,
+                                              null,
+                                              path,
+                                              entriesProcessed,
+                                              entriesTotal,
+                                              bytesTotal > 0 ? bytesProcessed : -1,
+                                              bytesTotal,
+                                              elapsed,
+                                              eta));
+    }
+
+    /**
+     * @return the milliseconds to complete, assuming the current rate, or -1 if it can not be estimated yet
+     */
+    public static long estimate(long elapsed, long processed, long total) {
+        if (processed <= 0 || total <= 0 || elapsed < 0) {
+            return -1;
+        }
+        if (processed >= total) {
+            return 0;
+        }
+        return (long) (elapsed * ((double) (total - processed) / processed));
+    }
+
+}
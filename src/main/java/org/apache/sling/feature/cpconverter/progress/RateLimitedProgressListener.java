@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+import static java.util.Objects.requireNonNull;
+
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Type;
+
+/**
+ * Forwards processed entries events at most once per interval, all the other events are always forwarded.
+ */
+public final class RateLimitedProgressListener implements ProgressListener {
+
+    private final ProgressListener delegate;
+
+    private final long intervalMillis;
+
+    private long lastForwarded = Long.MIN_VALUE;
+
+    public RateLimitedProgressListener(ProgressListener delegate, long intervalMillis) {
+        this.delegate = requireNonNull(delegate, "Null delegate listener can not be rate-limited");
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Negative interval " + intervalMillis + " is not valid");
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void onProgress(ProgressEvent event) {
+        if (event.getType() == Type.ENTRY_PROCESSED) {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (lastForwarded != Long.MIN_VALUE && now - lastForwarded < intervalMillis) {
+                    return;
+                }
+                lastForwarded = now;
+            }
+        }
+        delegate.onProgress(event);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.shared;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces files atomically, where the file system supports it: the content is written to a sibling temporary file,
+ * created with the default permissions as any other file, which is then moved in place.
+ */
+public final class AtomicFiles {
+
+    /**
+     * Writes the file content, the stream is closed by the caller.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void write(OutputStream output) throws IOException;
+
+    }
+
+    /**
+     * This class can not be instantiated from outside
+     */
+    private AtomicFiles() {
+        // do nothing
+    }
+
+    public static void write(Path target, ContentWriter contentWriter) throws IOException {
+        requireNonNull(target, "Impossible to write a null target file");
+        requireNonNull(contentWriter, "Impossible to write the target file content with a null writer");
+
+        Path parent = target.toAbsolutePath().getParent();
+        Path temporary;
+        OutputStream output;
+        while (true) {
+            // unlike Files.createTempFile(), no owner-only permissions
+            temporary = parent.resolve('.' + target.getFileName().toString() + '.' + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                output = Files.newOutputStream(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // taken by a concurrent writer, just try another name
+            }
+        }
+
+        try {
+            try (OutputStream buffered = new BufferedOutputStream(output)) {
+                contentWriter.write(buffered);
+            }
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.shared;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Central copy routines: file-to-file copies are delegated to {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * everything else goes through a per-thread reusable buffer instead of allocating a new one on each invocation.
+ */
+public final class StreamUtils {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BYTE_BUFFERS = new ThreadLocal<>();
+
+    private static final ThreadLocal<char[]> CHAR_BUFFERS = new ThreadLocal<>();
+
+    /**
+     * This class can not be instantiated from outside
+     */
+    private StreamUtils() {
+        // do nothing
+    }
+
+    public static long copy(InputStream input, OutputStream output) throws IOException {
+        requireNonNull(input, "Impossible to copy data from a null InputStream");
+        requireNonNull(output, "Impossible to copy data to a null OutputStream");
+
+        if (input instanceof FileInputStream && output instanceof FileOutputStream) {
+            return transfer(((FileInputStream) input).getChannel(), ((FileOutputStream) output).getChannel());
+        }
+
+        // the buffer is detached while in use, so a re-entrant copy on the same thread gets its own one
+        byte[] buffer = BYTE_BUFFERS.get();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        } else {
+            BYTE_BUFFERS.set(null);
+        }
+
+        try {
+            long count = 0;
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                output.write(buffer, 0, n);
+                count += n;
+            }
+            return count;
+        } finally {
+            BYTE_BUFFERS.set(buffer);
+        }
+    }
+
+    public static long copy(File file, OutputStream output) throws IOException {
+        requireNonNull(file, "Impossible to copy data from a null File");
+
+        try (InputStream input = new FileInputStream(file)) {
+            return copy(input, output);
+        }
+    }
+
+    public static long copy(InputStream input, File file) throws IOException {
+        requireNonNull(file, "Impossible to copy data to a null File");
+
+        try (OutputStream output = new FileOutputStream(file)) {
+            return copy(input, output);
+        }
+    }
+
+    public static long copy(Reader reader, Writer writer) throws IOException {
+        requireNonNull(reader, "Impossible to copy data from a null Reader");
+        requireNonNull(writer, "Impossible to copy data to a null Writer");
+
+        char[] buffer = CHAR_BUFFERS.get();
+        if (buffer == null) {
+            buffer = new char[BUFFER_SIZE];
+        } else {
+            CHAR_BUFFERS.set(null);
+        }
+
+        try {
+            long count = 0;
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, n);
+                count += n;
+            }
+            return count;
+        } finally {
+            CHAR_BUFFERS.set(buffer);
+        }
+    }
+
+    private static long transfer(FileChannel source, FileChannel target) throws IOException {
+        long position = source.position();
+        long count = source.size() - position;
+        long transferred = 0;
+
+        while (transferred < count) {
+            long current = source.transferTo(position + transferred, count - transferred, target);
+            if (current <= 0) {
+                // the file has been truncated meanwhile
+                break;
+            }
+            transferred += current;
+        }
+
+        // transferTo() doesn't move the source position
+        source.position(position + transferred);
+        return transferred;
+    }
+
+}
@@ -20,7 +20,10 @@ import static java.util.Objects.requireNonNull;
 import static org.apache.jackrabbit.vault.packaging.PackageProperties.NAME_CND_PATTERN;
 
 import java.io.File;
+import java.util.Enumeration;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
@@ -29,6 +32,9 @@ import org.apache.jackrabbit.vault.packaging.PackageManager;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.jackrabbit.vault.packaging.impl.PackageManagerImpl;
+import org.apache.jackrabbit.vault.packaging.impl.ZipVaultPackage;
+import org.apache.sling.feature.cpconverter.progress.ProgressListener;
+import org.apache.sling.feature.cpconverter.progress.ProgressTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +46,8 @@ public abstract class BaseVaultPackageScanner {
 
     protected final boolean strictValidation;
 
+    protected ProgressListener progressListener;
+
     public BaseVaultPackageScanner(boolean strictValidation) {
         this(new PackageManagerImpl(), strictValidation);
     }
@@ -49,11 +57,21 @@ public abstract class BaseVaultPackageScanner {
         this.strictValidation = strictValidation;
     }
 
+    public BaseVaultPackageScanner setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
     public VaultPackage open(File vaultPackage) throws Exception {
         requireNonNull(vaultPackage, "Impossible to process a null vault package");
         return packageManager.open(vaultPackage, strictValidation);
     }
 
+    public VaultPackage open(Archive archive) throws Exception {
+        requireNonNull(archive, "Impossible to process a null vault package archive");
+        return new ZipVaultPackage(archive, strictValidation);
+    }
+
     public final void traverse(File vaultPackageFile, boolean closeOnTraversed) throws Exception {
         VaultPackage vaultPackage = null;
         try {
@@ -80,34 +98,99 @@ public abstract class BaseVaultPackageScanner {
         addCdnPattern(importOptions.getCndPattern());
 
         Archive archive = vaultPackage.getArchive();
+        ZipFile zipFile = null;
         try {
             archive.open(strictValidation);
 
             Entry root = archive.getRoot();
-            traverse(null, archive, root);
+
+            PackageProgress progress = null;
+            if (progressListener != null) {
+                // sizes are read from the zip central directory, when the package is a file
+                File file = vaultPackage.getFile();
+                if (file != null) {
+                    zipFile = new ZipFile(file);
+                }
+                progress = new PackageProgress(newProgressTracker(String.valueOf(vaultPackage.getId()), root, zipFile), zipFile);
+                progress.tracker.start();
+            }
+
+            traverse(null, archive, root, progress);
+
+            if (progress != null) {
+                progress.tracker.complete();
+            }
         } finally {
+            if (zipFile != null) {
+                zipFile.close();
+            }
             archive.close();
         }
     }
 
-    private void traverse(String path, Archive archive, Entry entry) throws Exception {
+    private ProgressTracker newProgressTracker(String packageId, Entry root, ZipFile zipFile) {
+        long entriesTotal = 0;
+        long bytesTotal = -1;
+
+        if (zipFile != null) {
+            bytesTotal = 0;
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                if (!zipEntry.isDirectory()) {
+                    entriesTotal++;
+                    if (zipEntry.getSize() > 0) {
+                        bytesTotal += zipEntry.getSize();
+                    }
+                }
+            }
+        } else {
+            entriesTotal = countFiles(root);
+        }
+
+        return new ProgressTracker(progressListener, packageId, entriesTotal, bytesTotal);
+    }
+
+    private static long countFiles(Entry entry) {
+        if (!entry.isDirectory()) {
+            return 1;
+        }
+
+        long count = 0;
+        for (Entry child : entry.getChildren()) {
+            count += countFiles(child);
+        }
+        return count;
+    }
+
+    private void traverse(String path, Archive archive, Entry entry, PackageProgress progress) throws Exception {
         String entryPath = newPath(path, entry.getName());
 
         if (entry.isDirectory()) {
-            onDirectory(entryPath, archive, entry);
+            if (!onDirectory(entryPath, archive, entry)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Directory {} pruned, its children will not be traversed.", entryPath);
+                }
+                return;
+            }
 
             for (Entry child : entry.getChildren()) {
-                traverse(entryPath, archive, child);
+                traverse(entryPath, archive, child, progress);
             }
 
             return;
         }
 
-        logger.debug("Processing entry {}...", entryPath);
-
+        // hot path: one guarded line per entry, failures are reported with the entry path anyway
         onFile(entryPath, archive, entry);
 
-        logger.debug("Entry {} successfully processed.", entryPath);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Entry {} successfully processed.", entryPath);
+        }
+
+        if (progress != null) {
+            progress.entryProcessed(entryPath);
+        }
     }
 
     private static String newPath(String path, String entryName) {
@@ -118,8 +201,12 @@ public abstract class BaseVaultPackageScanner {
         return path + '/' + entryName;
     }
 
-    protected void onDirectory(String path, Archive archive, Entry entry) throws Exception {
-        // do nothing by default
+    /**
+     * @return true if the directory children have to be traversed, false if the whole subtree has to be skipped
+     */
+    protected boolean onDirectory(String path, Archive archive, Entry entry) throws Exception {
+        // traverse everything by default
+        return true;
     }
 
     protected void onFile(String path, Archive archive, Entry entry) throws Exception {
@@ -130,4 +217,28 @@ public abstract class BaseVaultPackageScanner {
         // do nothing by default
     }
 
+    private static final class PackageProgress {
+
+        private final ProgressTracker tracker;
+
+        private final ZipFile zipFile;
+
+        PackageProgress(ProgressTracker tracker, ZipFile zipFile) {
+            this.tracker = tracker;
+            this.zipFile = zipFile;
+        }
+
+        void entryProcessed(String entryPath) {
+            long size = -1;
+            if (zipFile != null) {
+                ZipEntry zipEntry = zipFile.getEntry(entryPath.substring(1));
+                if (zipEntry != null) {
+                    size = zipEntry.getSize();
+                }
+            }
+            tracker.entryProcessed(entryPath, size);
+        }
+
+    }
+
 }
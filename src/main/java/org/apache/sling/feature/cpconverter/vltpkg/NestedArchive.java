@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.jackrabbit.vault.fs.api.VaultInputSource;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.MemoryArchive;
+import org.apache.jackrabbit.vault.fs.io.ZipArchive;
+import org.apache.sling.feature.cpconverter.shared.StreamUtils;
+
+/**
+ * {@link Archive} of a content-package nested in another archive: small packages are kept entirely in memory, the
+ * bigger ones are spilled to a temporary file which is accessed randomly.
+ *
+ * The in-memory limit applies to the uncompressed content, as read from the zip central directory, since that is what
+ * {@link MemoryArchive} retains.
+ *
+ * Closing the archive does not discard its content, since packages are opened more than once while being converted;
+ * {@link #release()} has to be invoked once the package is not needed anymore.
+ */
+public final class NestedArchive implements Archive {
+
+    public static final int DEFAULT_MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    public static NestedArchive read(Archive parent, Entry entry) throws Exception {
+        return read(parent, entry, DEFAULT_MAX_IN_MEMORY_SIZE);
+    }
+
+    public static NestedArchive read(Archive parent, Entry entry, int maxInMemorySize) throws Exception {
+        requireNonNull(parent, "Impossible to read a nested archive from a null parent archive");
+        requireNonNull(entry, "Impossible to read a nested archive from a null archive entry");
+
+        try (InputStream input = parent.openInputStream(entry)) {
+            if (input == null) {
+                throw new IOException("Entry " + entry.getName() + " is not available in the parent archive");
+            }
+
+            BufferOutputStream buffer = new BufferOutputStream();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int n;
+            while ((n = input.read(chunk)) != -1) {
+                buffer.write(chunk, 0, n);
+
+                if (buffer.size() > maxInMemorySize) {
+                    return spill(entry, buffer, input);
+                }
+            }
+
+            // packages which inflate over the limit are spilled as well
+            long uncompressedSize = buffer.getUncompressedSize();
+            if (uncompressedSize < 0 || uncompressedSize > maxInMemorySize) {
+                return spill(entry, buffer, input);
+            }
+
+            MemoryArchive memoryArchive = new MemoryArchive(false);
+            memoryArchive.run(buffer.toInputStream());
+            return new NestedArchive(memoryArchive, null);
+        }
+    }
+
+    private static NestedArchive spill(Entry entry, BufferOutputStream buffer, InputStream input) throws IOException {
+        File spilled = File.createTempFile("nested-" + entry.getName(), ".zip");
+
+        try (OutputStream output = new FileOutputStream(spilled)) {
+            buffer.writeTo(output);
+            StreamUtils.copy(input, output);
+        } catch (IOException e) {
+            spilled.delete();
+            throw e;
+        }
+
+        return new NestedArchive(new ZipArchive(spilled), spilled);
+    }
+
+    private final Archive delegate;
+
+    private final File spilled;
+
+    /**
+     * This class can not be instantiated from outside
+     */
+    private NestedArchive(Archive delegate, File spilled) {
+        this.delegate = delegate;
+        this.spilled = spilled;
+    }
+
+    public boolean isInMemory() {
+        return spilled == null;
+    }
+
+    @Override
+    public void open(boolean strict) throws IOException {
+        delegate.open(strict);
+    }
+
+    @Override
+    public InputStream openInputStream(Entry entry) throws IOException {
+        return delegate.openInputStream(entry);
+    }
+
+    @Override
+    public VaultInputSource getInputSource(Entry entry) throws IOException {
+        return delegate.getInputSource(entry);
+    }
+
+    @Override
+    public Entry getJcrRoot() throws IOException {
+        return delegate.getJcrRoot();
+    }
+
+    @Override
+    public Entry getRoot() throws IOException {
+        return delegate.getRoot();
+    }
+
+    @Override
+    public MetaInf getMetaInf() {
+        return delegate.getMetaInf();
+    }
+
+    @Override
+    public Entry getEntry(String path) throws IOException {
+        return delegate.getEntry(path);
+    }
+
+    @Override
+    public Archive getSubArchive(String root, boolean asJcrRoot) throws IOException {
+        return delegate.getSubArchive(root, asJcrRoot);
+    }
+
+    @Override
+    public void close() {
+        // just releases the file handles, if any, the archive can be opened again
+        delegate.close();
+    }
+
+    public void release() {
+        delegate.close();
+
+        if (spilled != null) {
+            spilled.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spilled != null ? spilled.toString() : delegate.toString();
+    }
+
+    // avoids copying the buffered bytes once again
+    private static final class BufferOutputStream extends ByteArrayOutputStream {
+
+        public BufferOutputStream() {
+            super(CHUNK_SIZE);
+        }
+
+        public InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        /**
+         * @return the sum of the entries uncompressed sizes, -1 if the central directory can not be read
+         */
+        public long getUncompressedSize() {
+            // the end of central directory record is followed by a comment up to 64K long
+            int end = count - END_OF_CENTRAL_DIRECTORY_SIZE;
+            int limit = Math.max(0, end - 0xFFFF);
+            while (end >= limit && readInt(end) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                end--;
+            }
+            if (end < limit) {
+                return -1;
+            }
+
+            int entries = readShort(end + 10);
+            long offset = readInt(end + 16) & ZIP64_MARKER;
+            if (offset == ZIP64_MARKER) {
+                return -1;
+            }
+
+            long size = 0;
+            for (int i = 0; i < entries; i++) {
+                if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > end
+                        || readInt((int) offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                    return -1;
+                }
+
+                int header = (int) offset;
+                long uncompressedSize = readInt(header + 24) & ZIP64_MARKER;
+                if (uncompressedSize == ZIP64_MARKER) {
+                    return -1;
+                }
+                size += uncompressedSize;
+
+                offset += CENTRAL_DIRECTORY_HEADER_SIZE
+                          + readShort(header + 28)
+                          + readShort(header + 30)
+                          + readShort(header + 32);
+            }
+            return size;
+        }
+
+        private int readShort(int index) {
+            return (buf[index] & 0xFF) | (buf[index + 1] & 0xFF) << 8;
+        }
+
+        private int readInt(int index) {
+            return readShort(index) | readShort(index + 2) << 16;
+        }
+
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+import org.apache.jackrabbit.vault.packaging.CyclicDependencyException;
+import org.apache.jackrabbit.vault.packaging.Dependency;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+
+/**
+ * Dependency graph of the input content-packages, sorted in layers where each package depends only on packages of
+ * previous layers; packages in the same layer do not depend on each other.
+ */
+public final class PackageDependencyGraph {
+
+    // preserves the input order, which is the order of packages in the same layer
+    private final Map<PackageId, VaultPackage> packages = new LinkedHashMap<>();
+
+    private final Map<String, List<PackageId>> packagesIndex = new HashMap<>();
+
+    private Map<PackageId, Set<PackageId>> dependencies;
+
+    private List<List<VaultPackage>> layers;
+
+    public void addPackage(VaultPackage vaultPackage) {
+        requireNonNull(vaultPackage, "Null content-package can not be added to the dependency graph.");
+
+        PackageId id = vaultPackage.getId();
+        if (packages.put(id, vaultPackage) == null) {
+            packagesIndex.computeIfAbsent(toKey(id.getGroup(), id.getName()), k -> new LinkedList<>()).add(id);
+        }
+
+        dependencies = null;
+        layers = null;
+    }
+
+    public Collection<PackageId> getPackageIds() {
+        return Collections.unmodifiableCollection(packages.keySet());
+    }
+
+    /**
+     * Returns the packages in a valid installation order.
+     */
+    public List<VaultPackage> getOrderedPackages() throws CyclicDependencyException {
+        List<VaultPackage> orderedPackages = new ArrayList<>(packages.size());
+        for (List<VaultPackage> layer : getLayers()) {
+            orderedPackages.addAll(layer);
+        }
+        return orderedPackages;
+    }
+
+    /**
+     * Kahn's algorithm, where each iteration collects all the packages whose dependencies have been already satisfied.
+     */
+    public List<List<VaultPackage>> getLayers() throws CyclicDependencyException {
+        if (layers != null) {
+            return layers;
+        }
+
+        Map<PackageId, Set<PackageId>> dependencies = getDependencies();
+
+        Map<PackageId, Integer> inDegrees = new HashMap<>();
+        Map<PackageId, List<PackageId>> dependants = new HashMap<>();
+        for (Entry<PackageId, Set<PackageId>> entry : dependencies.entrySet()) {
+            inDegrees.put(entry.getKey(), entry.getValue().size());
+            for (PackageId dependency : entry.getValue()) {
+                dependants.computeIfAbsent(dependency, k -> new LinkedList<>()).add(entry.getKey());
+            }
+        }
+
+        Map<PackageId, Integer> positions = new HashMap<>();
+        List<List<VaultPackage>> layers = new ArrayList<>();
+        List<PackageId> current = new ArrayList<>();
+        for (PackageId id : packages.keySet()) {
+            positions.put(id, positions.size());
+            if (inDegrees.get(id) == 0) {
+                current.add(id);
+            }
+        }
+
+        int sorted = 0;
+        while (!current.isEmpty()) {
+            List<VaultPackage> layer = new ArrayList<>(current.size());
+            Set<PackageId> next = new LinkedHashSet<>();
+
+            for (PackageId id : current) {
+                layer.add(packages.get(id));
+
+                for (PackageId dependant : dependants.getOrDefault(id, Collections.<PackageId>emptyList())) {
+                    if (inDegrees.merge(dependant, -1, Integer::sum) == 0) {
+                        next.add(dependant);
+                    }
+                }
+            }
+
+            layers.add(layer);
+            sorted += layer.size();
+
+            // keep the input order inside the same layer
+            current = new ArrayList<>(next);
+            current.sort(Comparator.comparing(positions::get));
+        }
+
+        if (sorted < packages.size()) {
+            List<PackageId> cyclic = new ArrayList<>();
+            for (Entry<PackageId, Integer> inDegree : inDegrees.entrySet()) {
+                if (inDegree.getValue() > 0) {
+                    cyclic.add(inDegree.getKey());
+                }
+            }
+            throw new CyclicDependencyException("Cyclic dependency detected, content-packages " + cyclic + " depend on each other");
+        }
+
+        this.layers = layers;
+        return layers;
+    }
+
+    /**
+     * Writes the graph in the <a href="https://graphviz.org/doc/info/lang.html">DOT language</a>.
+     */
+    public void writeDot(Writer writer) throws IOException {
+        writer.write("digraph \"content-packages\" {\n");
+        for (Entry<PackageId, Set<PackageId>> entry : getDependencies().entrySet()) {
+            writer.write("  \"" + entry.getKey() + "\";\n");
+            for (PackageId dependency : entry.getValue()) {
+                writer.write("  \"" + entry.getKey() + "\" -> \"" + dependency + "\";\n");
+            }
+        }
+        writer.write("}\n");
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        Map<PackageId, Integer> layerIndexes = new HashMap<>();
+        try {
+            List<List<VaultPackage>> layers = getLayers();
+            for (int i = 0; i < layers.size(); i++) {
+                for (VaultPackage vaultPackage : layers.get(i)) {
+                    layerIndexes.put(vaultPackage.getId(), i);
+                }
+            }
+        } catch (CyclicDependencyException e) {
+            // layers are not available, just the plain graph will be exported
+        }
+
+        // the writer is owned by the caller, so the generator is flushed but not closed
+        JsonGenerator generator = Json.createGenerator(writer);
+        generator.writeStartObject().writeStartArray("packages");
+        for (Entry<PackageId, Set<PackageId>> entry : getDependencies().entrySet()) {
+            generator.writeStartObject().write("id", entry.getKey().toString());
+
+            Integer layer = layerIndexes.get(entry.getKey());
+            if (layer != null) {
+                generator.write("layer", layer);
+            }
+
+            generator.writeStartArray("dependencies");
+            for (PackageId dependency : entry.getValue()) {
+                generator.write(dependency.toString());
+            }
+            generator.writeEnd().writeEnd();
+        }
+        generator.writeEnd().writeEnd();
+        generator.flush();
+    }
+
+    private Map<PackageId, Set<PackageId>> getDependencies() {
+        if (dependencies != null) {
+            return dependencies;
+        }
+
+        dependencies = new LinkedHashMap<>();
+        for (Entry<PackageId, VaultPackage> entry : packages.entrySet()) {
+            Set<PackageId> packageDependencies = new LinkedHashSet<>();
+
+            for (Dependency dependency : entry.getValue().getDependencies()) {
+                List<PackageId> candidates = packagesIndex.get(toKey(dependency.getGroup(), dependency.getName()));
+                if (candidates == null) {
+                    // not part of the input content-packages
+                    continue;
+                }
+
+                for (PackageId candidate : candidates) {
+                    if (!candidate.equals(entry.getKey()) && dependency.matches(candidate)) {
+                        packageDependencies.add(candidate);
+                        break;
+                    }
+                }
+            }
+
+            dependencies.put(entry.getKey(), packageDependencies);
+        }
+        return dependencies;
+    }
+
+    private static String toKey(String group, String name) {
+        return group + ':' + name;
+    }
+
+}
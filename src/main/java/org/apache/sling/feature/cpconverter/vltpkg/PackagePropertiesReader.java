@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.apache.jackrabbit.vault.util.Constants.META_DIR;
+import static org.apache.jackrabbit.vault.util.Constants.PROPERTIES_XML;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+
+/**
+ * Reads the content-package identifier out of a zipped content-package stream, without extracting it.
+ */
+public final class PackagePropertiesReader {
+
+    private static final String PROPERTIES_XML_ENTRY = META_DIR + '/' + PROPERTIES_XML;
+
+    /**
+     * This class can not be instantiated from outside
+     */
+    private PackagePropertiesReader() {
+        // do nothing
+    }
+
+    /**
+     * Scans the input stream until the {@code META-INF/vault/properties.xml} entry is found.
+     *
+     * @return the package identifier, null if it can not be determined.
+     */
+    public static PackageId readPackageId(InputStream input) throws IOException {
+        try (ZipInputStream zipInput = new ZipInputStream(input)) {
+            ZipEntry entry;
+            while ((entry = zipInput.getNextEntry()) != null) {
+                if (!PROPERTIES_XML_ENTRY.equals(entry.getName())) {
+                    continue;
+                }
+
+                Properties properties = new Properties();
+                // loadFromXML() closes the stream
+                properties.loadFromXML(new CloseShieldInputStream(zipInput));
+
+                String group = properties.getProperty(PackageProperties.NAME_GROUP);
+                String name = properties.getProperty(PackageProperties.NAME_NAME);
+                if (group == null || name == null) {
+                    return null;
+                }
+
+                String version = properties.getProperty(PackageProperties.NAME_VERSION, "");
+                return new PackageId(group, name, version);
+            }
+        }
+
+        return null;
+    }
+
+}
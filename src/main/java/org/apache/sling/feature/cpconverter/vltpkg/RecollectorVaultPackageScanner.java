@@ -16,17 +16,16 @@
  */
 package org.apache.sling.feature.cpconverter.vltpkg;
 
-import java.util.Map;
-
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
-import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageManager;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
 import org.apache.sling.feature.cpconverter.handlers.VersionResolverContentPackageEntryHandler;
 
 public final class RecollectorVaultPackageScanner extends BaseVaultPackageScanner {
 
+    private static final String PACKAGES_PATH = "/jcr_root/etc/packages";
+
     private final ContentPackage2FeatureModelConverter converter;
 
     private final VersionResolverContentPackageEntryHandler handler;
@@ -34,10 +33,19 @@ public final class RecollectorVaultPackageScanner extends BaseVaultPackageScanne
     public RecollectorVaultPackageScanner(ContentPackage2FeatureModelConverter converter,
                                           PackageManager packageManager,
                                           boolean strictValidation,
-                                          Map<PackageId, String> subContentPackages) {
+                                          SubContentPackagesResolver subContentPackagesResolver) {
         super(packageManager, strictValidation);
         this.converter = converter;
-        handler = new VersionResolverContentPackageEntryHandler(this, subContentPackages);
+        handler = new VersionResolverContentPackageEntryHandler(this, subContentPackagesResolver);
+    }
+
+    @Override
+    protected boolean onDirectory(String path, Archive archive, Entry entry) throws Exception {
+        // only sub-content packages are collected, no need to descend anywhere else
+        return path.isEmpty()
+               || PACKAGES_PATH.startsWith(path + '/')
+               || PACKAGES_PATH.equals(path)
+               || path.startsWith(PACKAGES_PATH + '/');
     }
 
     @Override
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the latest version of each detected sub-content package, and of the archive paths they were found at.
+ */
+public final class SubContentPackagesResolver {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    // group:name -> latest detected version
+    private final Map<String, PackageId> latestVersions = new HashMap<>();
+
+    private final Map<PackageId, String> paths = new HashMap<>();
+
+    // the same path can be shared by sub-packages of different input content-packages
+    private final Map<String, Integer> includedPaths = new HashMap<>();
+
+    /**
+     * Registers the sub-content package found at the given path, if it is the first or the newest one with such group/name.
+     *
+     * @return true if the package has been registered, false if a newer/same version was already registered.
+     */
+    public synchronized boolean resolve(PackageId currentId, String path) {
+        requireNonNull(currentId, "Impossible to resolve a null sub-content package");
+        requireNonNull(path, "Impossible to resolve a sub-content package without its path");
+
+        logger.info("Checking if other {}:{} content-package versions were handled already", currentId.getGroup(), currentId.getName());
+
+        String key = currentId.getGroup() + ':' + currentId.getName();
+        PackageId olderId = latestVersions.get(key);
+
+        if (olderId != null) {
+            logger.info("Comparing {}:{} package versions: current one is {}, previous one is {} ",
+                        currentId.getGroup(), currentId.getName(), currentId.getVersionString(), olderId.getVersionString());
+
+            if (currentId.compareTo(olderId) <= 0) {
+                return false;
+            }
+
+            logger.info("Replacing version {} of content-package {}:{} with version {}",
+                        olderId.getVersionString(), currentId.getGroup(), currentId.getName(), currentId.getVersionString());
+
+            String olderPath = paths.remove(olderId);
+            includedPaths.computeIfPresent(olderPath, (p, count) -> count == 1 ? null : count - 1);
+        } else {
+            logger.info("There were not other version of {}:{} content-package", currentId.getGroup(), currentId.getName());
+        }
+
+        latestVersions.put(key, currentId);
+        paths.put(currentId, path);
+        includedPaths.merge(path, 1, Integer::sum);
+
+        return true;
+    }
+
+    public synchronized boolean isIncluded(String path) {
+        return includedPaths.containsKey(path);
+    }
+
+    public synchronized PackageId getLatestVersion(String group, String name) {
+        return latestVersions.get(group + ':' + name);
+    }
+
+}
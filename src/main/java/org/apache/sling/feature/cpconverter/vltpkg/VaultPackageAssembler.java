@@ -19,35 +19,44 @@ package org.apache.sling.feature.cpconverter.vltpkg;
 import static org.apache.jackrabbit.vault.util.Constants.CONFIG_XML;
 import static org.apache.jackrabbit.vault.util.Constants.FILTER_XML;
 import static org.apache.jackrabbit.vault.util.Constants.META_DIR;
+import static org.apache.jackrabbit.vault.util.Constants.META_INF;
 import static org.apache.jackrabbit.vault.util.Constants.PACKAGE_DEFINITION_XML;
 import static org.apache.jackrabbit.vault.util.Constants.PROPERTIES_XML;
 import static org.apache.jackrabbit.vault.util.Constants.ROOT_DIR;
 import static org.apache.jackrabbit.vault.util.Constants.SETTINGS_XML;
 import static org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter.PACKAGE_CLASSIFIER;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.vault.fs.api.ImportMode;
 import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
+import org.apache.jackrabbit.vault.packaging.PackageId;
 import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.sling.feature.cpconverter.ContentPackage2FeatureModelConverter;
 import org.apache.sling.feature.cpconverter.handlers.EntryHandler;
-import org.codehaus.plexus.archiver.Archiver;
-import org.codehaus.plexus.archiver.jar.JarArchiver;
-import org.codehaus.plexus.archiver.util.DefaultFileSet;
+import org.apache.sling.feature.cpconverter.shared.StreamUtils;
 
 public class VaultPackageAssembler implements EntryHandler {
 
@@ -55,30 +64,82 @@ public class VaultPackageAssembler implements EntryHandler {
 
     private static final String[] INCLUDE_RESOURCES = { PACKAGE_DEFINITION_XML, CONFIG_XML, SETTINGS_XML };
 
+    private static final Set<String> GENERATED_METADATA = new HashSet<>(Arrays.asList(META_DIR + '/' + PROPERTIES_XML, META_DIR + '/' + FILTER_XML));
+
+    // loaded once, the default templates are immutable
+    private static final Map<String, byte[]> TEMPLATES = loadTemplates();
+
     private static final File TMP_DIR = new File(System.getProperty("java.io.tmpdir"), "syntethic-content-packages");
 
     private static final Pattern OSGI_BUNDLE_PATTERN = Pattern.compile("(jcr_root)?/apps/[^/]+/install(\\.([^/]+))?/.+\\.jar");
 
+    private static Map<String, byte[]> loadTemplates() {
+        Map<String, byte[]> templates = new LinkedHashMap<>();
+        for (String resource : INCLUDE_RESOURCES) {
+            try (InputStream input = VaultPackageAssembler.class.getResourceAsStream(resource)) {
+                if (input == null) {
+                    throw new IllegalStateException("Resource " + resource + " not found in the classpath");
+                }
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                StreamUtils.copy(input, buffer);
+                templates.put(resource, buffer.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossible to load resource " + resource + " from the classpath", e);
+            }
+        }
+        return Collections.unmodifiableMap(templates);
+    }
+
     public static VaultPackageAssembler create(VaultPackage vaultPackage) {
         return create(vaultPackage, vaultPackage.getMetaInf().getFilter());
     }
 
-    public static File createSynthetic(VaultPackage vaultPackage) throws Exception {
+    /**
+     * Builds the metadata-only zip of the given package.
+     */
+    public static byte[] createSynthetic(VaultPackage vaultPackage) throws Exception {
         DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
         PathFilterSet filterSet = new PathFilterSet();
         SyntheticPathFilter pathFilter = new SyntheticPathFilter();
         filterSet.addExclude(pathFilter);
         filterSet.setImportMode(ImportMode.MERGE);
         filter.add(filterSet);
-        return create(vaultPackage, filter).createPackage();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutput = new ZipOutputStream(buffer)) {
+            // avoid any possible Stream is not a content package. Missing 'jcr_root' error
+            zipOutput.putNextEntry(new ZipEntry(ROOT_DIR + '/'));
+            zipOutput.closeEntry();
+
+            writeMetadata(zipOutput, createProperties(vaultPackage), filter, null);
+        }
+
+        return buffer.toByteArray();
     }
 
     private static VaultPackageAssembler create(VaultPackage vaultPackage, WorkspaceFilter filter) {
-        File storingDirectory = new File(TMP_DIR, vaultPackage.getFile().getName() + "-deflated");
+        String fileName = getFileName(vaultPackage);
+
+        // each assembler gets its own working directory, so the same package can be assembled concurrently
+        File workingDirectory;
+        try {
+            TMP_DIR.mkdirs();
+            workingDirectory = Files.createTempDirectory(TMP_DIR.toPath(), fileName + '-').toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible to create the working directory for content-package " + fileName, e);
+        }
+
+        File storingDirectory = new File(workingDirectory, "deflated");
         // avoid any possible Stream is not a content package. Missing 'jcr_root' error
         File jcrRootDirectory = new File(storingDirectory, ROOT_DIR);
         jcrRootDirectory.mkdirs();
 
+        VaultPackageAssembler assembler = new VaultPackageAssembler(fileName, workingDirectory, storingDirectory, createProperties(vaultPackage));
+        assembler.mergeFilters(filter);
+        return assembler;
+    }
+
+    private static Properties createProperties(VaultPackage vaultPackage) {
         PackageProperties packageProperties = vaultPackage.getProperties();
 
         Properties properties = new Properties();
@@ -104,13 +165,34 @@ public class VaultPackageAssembler implements EntryHandler {
             }
         }
 
-        VaultPackageAssembler assembler = new VaultPackageAssembler(storingDirectory, properties);
-        assembler.mergeFilters(filter);
-        return assembler;
+        return properties;
+    }
+
+    private static String getFileName(VaultPackage vaultPackage) {
+        File file = vaultPackage.getFile();
+        if (file != null) {
+            return file.getName();
+        }
+
+        // nested packages are not backed by a file, same name and version may be used in different groups
+        PackageId id = vaultPackage.getId();
+        StringBuilder fileName = new StringBuilder();
+        if (!id.getGroup().isEmpty()) {
+            fileName.append(id.getGroup().replace('/', '_')).append('-');
+        }
+        fileName.append(id.getName());
+        if (!id.getVersionString().isEmpty()) {
+            fileName.append('-').append(id.getVersionString());
+        }
+        return fileName.append(".zip").toString();
     }
 
     private final DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
 
+    private final String fileName;
+
+    private final File workingDirectory;
+
     private final File storingDirectory;
 
     private final Properties properties;
@@ -129,7 +211,9 @@ public class VaultPackageAssembler implements EntryHandler {
     /**
      * This class can not be instantiated from outside
      */
-    private VaultPackageAssembler(File storingDirectory, Properties properties) {
+    private VaultPackageAssembler(String fileName, File workingDirectory, File storingDirectory, Properties properties) {
+        this.fileName = fileName;
+        this.workingDirectory = workingDirectory;
         this.storingDirectory = storingDirectory;
         this.properties = properties;
     }
@@ -159,9 +243,7 @@ public class VaultPackageAssembler implements EntryHandler {
 
         target.getParentFile().mkdirs();
 
-        try (OutputStream output = new FileOutputStream(target)) {
-            IOUtils.copy(input, output);
-        }
+        StreamUtils.copy(input, target);
     }
 
     public File getEntry(String path) {
@@ -173,51 +255,94 @@ public class VaultPackageAssembler implements EntryHandler {
     }
 
     public File createPackage() throws IOException {
-        return createPackage(TMP_DIR);
+        return createPackage(workingDirectory);
     }
 
     public File createPackage(File outputDirectory) throws IOException {
-        // generate the Vault properties XML file
-
-        File metaDir = new File(storingDirectory, META_DIR);
-        if (!metaDir.exists()) {
-            metaDir.mkdirs();
+        if (!outputDirectory.exists()) {
+            outputDirectory.mkdirs();
         }
+        File destFile = new File(outputDirectory, fileName);
 
-        File xmlProperties = new File(metaDir, PROPERTIES_XML);
+        try (ZipOutputStream zipOutput = new ZipOutputStream(new FileOutputStream(destFile))) {
+            // the metadata first, so the package can be identified without reading it entirely
+            writeMetadata(zipOutput, properties, filter, new File(storingDirectory, META_DIR));
 
-        try (FileOutputStream fos = new FileOutputStream(xmlProperties)) {
-            properties.storeToXML(fos, null);
-        }
+            File metaInfDirectory = new File(storingDirectory, META_INF);
+            if (metaInfDirectory.isDirectory()) {
+                zipOutput.putNextEntry(new ZipEntry(META_INF + '/'));
+                zipOutput.closeEntry();
+
+                addDirectory(zipOutput, metaInfDirectory, META_INF, null);
+            }
 
-        // generate the Vault filter XML file
-        File xmlFilter = new File(metaDir, FILTER_XML);
-        try (InputStream input = filter.getSource();
-                FileOutputStream output = new FileOutputStream(xmlFilter)) {
-            IOUtils.copy(input, output);
+            // then the collected content
+            addDirectory(zipOutput, storingDirectory, null, metaInfDirectory);
         }
 
-        // copy the required resources
+        return destFile;
+    }
 
-        for (String resource : INCLUDE_RESOURCES) {
-            try (InputStream input = getClass().getResourceAsStream(resource)) {
-                addEntry(ROOT_DIR + resource, input);
-            }
+    /**
+     * Removes the working directory, including the package created by {@link #createPackage()}.
+     */
+    public void cleanup() {
+        FileUtils.deleteQuietly(workingDirectory);
+    }
+
+    private static void addDirectory(ZipOutputStream zipOutput, File directory, String path, File excluded) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
         }
+        Arrays.sort(children);
 
-        // create the target archiver
+        for (File child : children) {
+            if (child.equals(excluded)) {
+                continue;
+            }
 
-        Archiver archiver = new JarArchiver();
-        archiver.setIncludeEmptyDirs(true);
+            String entryName = path == null ? child.getName() : path + '/' + child.getName();
 
-        String destFileName = storingDirectory.getName().substring(0, storingDirectory.getName().lastIndexOf('-'));
-        File destFile = new File(TMP_DIR, destFileName);
+            if (child.isDirectory()) {
+                zipOutput.putNextEntry(new ZipEntry(entryName + '/'));
+                zipOutput.closeEntry();
 
-        archiver.setDestFile(destFile);
-        archiver.addFileSet(new DefaultFileSet(storingDirectory));
-        archiver.createArchive();
+                addDirectory(zipOutput, child, entryName, null);
+            } else if (!GENERATED_METADATA.contains(entryName)) {
+                ZipEntry entry = new ZipEntry(entryName);
+                entry.setTime(child.lastModified());
+                zipOutput.putNextEntry(entry);
+                StreamUtils.copy(child, zipOutput);
+                zipOutput.closeEntry();
+            }
+        }
+    }
 
-        return destFile;
+    /**
+     * Writes properties.xml and filter.xml, and the default templates missing in the given directory, if any.
+     */
+    private static void writeMetadata(ZipOutputStream zipOutput,
+                                      Properties properties,
+                                      WorkspaceFilter filter,
+                                      File existingMetaDir) throws IOException {
+        zipOutput.putNextEntry(new ZipEntry(META_DIR + '/' + PROPERTIES_XML));
+        properties.storeToXML(zipOutput, null);
+        zipOutput.closeEntry();
+
+        zipOutput.putNextEntry(new ZipEntry(META_DIR + '/' + FILTER_XML));
+        try (InputStream input = filter.getSource()) {
+            StreamUtils.copy(input, zipOutput);
+        }
+        zipOutput.closeEntry();
+
+        for (Map.Entry<String, byte[]> template : TEMPLATES.entrySet()) {
+            if (existingMetaDir == null || !new File(existingMetaDir, template.getKey()).isFile()) {
+                zipOutput.putNextEntry(new ZipEntry(META_DIR + '/' + template.getKey()));
+                zipOutput.write(template.getValue());
+                zipOutput.closeEntry();
+            }
+        }
     }
 
 }
@@ -19,13 +19,17 @@ package org.apache.sling.feature.cpconverter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -39,6 +43,7 @@ import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.vault.packaging.CyclicDependencyException;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.apache.jackrabbit.vault.packaging.impl.PackageManagerImpl;
 import org.apache.sling.feature.ArtifactId;
 import org.apache.sling.feature.Extension;
 import org.apache.sling.feature.Feature;
@@ -47,6 +52,9 @@ import org.apache.sling.feature.cpconverter.artifacts.DefaultArtifactsDeployer;
 import org.apache.sling.feature.cpconverter.features.DefaultFeaturesManager;
 import org.apache.sling.feature.cpconverter.filtering.RegexBasedResourceFilter;
 import org.apache.sling.feature.cpconverter.handlers.DefaultEntryHandlersManager;
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent;
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Phase;
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Type;
 import org.apache.sling.feature.io.json.FeatureJSONReader;
 import org.junit.After;
 import org.junit.Before;
@@ -245,6 +253,87 @@ public class ContentPackage2FeatureModelConverterTest {
                  .convert(packageFile);
     }
 
+    @Test
+    public void syntheticPackagesCreatedOncePerConversion() throws Exception {
+        File file = FileUtils.toFile(getClass().getResource("test_b-1.0.zip"));
+
+        byte[] syntheticPackage;
+        try (VaultPackage vaultPackage = new PackageManagerImpl().open(file)) {
+            syntheticPackage = converter.getSyntheticPackage(vaultPackage);
+        }
+
+        // same package, found once again
+        try (VaultPackage vaultPackage = new PackageManagerImpl().open(file)) {
+            assertSame(syntheticPackage, converter.getSyntheticPackage(vaultPackage));
+        }
+
+        File outputDirectory = new File(System.getProperty("java.io.tmpdir"), getClass().getName() + '_' + System.currentTimeMillis());
+        try {
+            converter.setFeaturesManager(new DefaultFeaturesManager(true, 5, outputDirectory, null, null))
+                     .setBundlesDeployer(new DefaultArtifactsDeployer(outputDirectory))
+                     .convert(FileUtils.toFile(getClass().getResource("test-content-package.zip")));
+        } finally {
+            FileUtils.deleteDirectory(outputDirectory);
+        }
+
+        // released once the conversion is over
+        try (VaultPackage vaultPackage = new PackageManagerImpl().open(file)) {
+            assertNotSame(syntheticPackage, converter.getSyntheticPackage(vaultPackage));
+        }
+    }
+
+    @Test
+    public void verifyFailingFastOnUndesiredPackages() throws Exception {
+        RegexBasedResourceFilter resourceFilter = new RegexBasedResourceFilter();
+        resourceFilter.addFilteringPattern(".*\\/install(?!(\\.runMode1\\/|\\.runMode2\\/|\\/))(.*)(?=\\.zip$).*");
+        converter.setResourceFilter(resourceFilter)
+                 .setFailFast(true);
+
+        URL packageUrl = getClass().getResource("test-content-package-unacceptable.zip");
+        File packageFile = FileUtils.toFile(packageUrl);
+
+        try {
+            converter.convert(packageFile);
+            fail("Package with filtered out entries must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("/jcr_root/apps/asd/install.unacceptedRunMode/test-content.zip"));
+        }
+
+        // rejected before reading the package
+        assertTrue(converter.getDependencyGraph().getPackageIds().isEmpty());
+    }
+
+    @Test
+    public void reportProgress() throws Exception {
+        URL packageUrl = getClass().getResource("test-content-package.zip");
+        File packageFile = FileUtils.toFile(packageUrl);
+
+        File outputDirectory = new File(System.getProperty("java.io.tmpdir"), getClass().getName() + '_' + System.currentTimeMillis());
+
+        List<ProgressEvent> events = new ArrayList<>();
+        converter.setFeaturesManager(new DefaultFeaturesManager(true, 5, outputDirectory, null, null))
+                 .setBundlesDeployer(new DefaultArtifactsDeployer(outputDirectory))
+                 .setProgressListener(events::add)
+                 .convert(packageFile);
+
+        List<Phase> phases = new ArrayList<>();
+        ProgressEvent completed = null;
+        for (ProgressEvent event : events) {
+            if (event.getType() == Type.PHASE_CHANGED) {
+                phases.add(event.getPhase());
+            } else if (event.getType() == Type.PACKAGE_COMPLETED && "asd/sample:asd.retail.all:0.0.1".equals(event.getPackageId())) {
+                completed = event;
+            }
+        }
+
+        assertEquals(Arrays.asList(Phase.READING, Phase.CONVERTING, Phase.ASSEMBLING, Phase.SERIALIZING), phases);
+        assertNotNull(completed);
+        assertTrue(completed.getEntriesProcessed() > 0);
+        assertTrue(completed.getEntriesProcessed() <= completed.getEntriesTotal());
+        assertTrue(completed.getBytesProcessed() <= completed.getBytesTotal());
+        assertEquals(0, completed.getEta());
+    }
+
     @Test(expected = IllegalStateException.class)
     public void doesNotAllowSameConfigurationPidForSameRunmode() throws Exception {
         addSamePidConfiguration(null, null);
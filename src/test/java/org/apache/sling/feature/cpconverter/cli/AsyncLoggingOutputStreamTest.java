@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class AsyncLoggingOutputStreamTest {
+
+    @Test
+    public void linesWrittenInOrderOnceClosed() throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        AsyncLoggingOutputStream async = new AsyncLoggingOutputStream(target);
+        PrintStream printer = new PrintStream(async, false, "UTF-8");
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            printer.println("line " + i);
+            printer.flush();
+            expected.append("line ").append(i).append(System.lineSeparator());
+        }
+
+        async.close();
+        // late lines bypass the queue
+        printer.println("late");
+        printer.flush();
+        expected.append("late").append(System.lineSeparator());
+
+        assertEquals(expected.toString(), new String(target.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchManifestTest {
+
+    private File baseDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        baseDirectory = new File(System.getProperty("java.io.tmpdir"), getClass().getName() + '_' + System.currentTimeMillis());
+        baseDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(baseDirectory);
+    }
+
+    @Test
+    public void jobsInheritDefaults() throws Exception {
+        File manifest = writeManifest("{"
+                                      + "\"defaults\": {"
+                                      + "  \"artifacts-output-directory\": \"artifacts\","
+                                      + "  \"features-output-directory\": \"features\""
+                                      + "},"
+                                      + "\"jobs\": ["
+                                      + "  { \"name\": \"first\", \"content-packages\": [ \"a.zip\", \"b.zip\" ] },"
+                                      + "  { \"content-packages\": \"/tmp/c.zip\", \"features-output-directory\": \"/tmp/other\" }"
+                                      + "]"
+                                      + "}");
+
+        List<ConversionJob> jobs = BatchManifest.read(manifest);
+        assertEquals(2, jobs.size());
+
+        ConversionJob first = jobs.get(0);
+        assertEquals("first", first.getName());
+        assertEquals(Arrays.asList(new File(baseDirectory, "a.zip"), new File(baseDirectory, "b.zip")), first.getContentPackages());
+        assertEquals(new File(baseDirectory, "artifacts"), first.getArtifactsOutputDirectory());
+        assertEquals(new File(baseDirectory, "features"), first.getFeatureModelsOutputDirectory());
+
+        ConversionJob second = jobs.get(1);
+        assertEquals("job-2", second.getName());
+        assertEquals(Arrays.asList(new File("/tmp/c.zip")), second.getContentPackages());
+        assertEquals(new File(baseDirectory, "artifacts"), second.getArtifactsOutputDirectory());
+        assertEquals(new File("/tmp/other"), second.getFeatureModelsOutputDirectory());
+    }
+
+    @Test
+    public void duplicatedJobNamesNotAllowed() throws Exception {
+        File manifest = writeManifest("{ \"jobs\": [ { \"name\": \"same\" }, { \"name\": \"same\" } ] }");
+
+        try {
+            BatchManifest.read(manifest);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("'same'"));
+            return;
+        }
+        throw new AssertionError("Duplicated job names must be rejected");
+    }
+
+    @Test
+    public void bundlesStartOrderAcceptedAsNumberOrString() throws Exception {
+        File manifest = writeManifest("{ \"jobs\": ["
+                                      + "  { \"name\": \"number\", \"bundles-start-order\": 10 },"
+                                      + "  { \"name\": \"string\", \"bundles-start-order\": \"20\" }"
+                                      + "] }");
+
+        List<ConversionJob> jobs = BatchManifest.read(manifest);
+        assertEquals(10, jobs.get(0).getBundlesStartOrder());
+        assertEquals(20, jobs.get(1).getBundlesStartOrder());
+    }
+
+    @Test
+    public void invalidBundlesStartOrderNotAllowed() throws Exception {
+        File manifest = writeManifest("{ \"jobs\": [ { \"name\": \"invalid\", \"bundles-start-order\": true } ] }");
+
+        try {
+            BatchManifest.read(manifest);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'bundles-start-order' of job 'invalid'"));
+            return;
+        }
+        throw new AssertionError("Non integer bundles start order must be rejected");
+    }
+
+    @Test(expected = IOException.class)
+    public void missingJobsNotAllowed() throws Exception {
+        BatchManifest.read(writeManifest("{ \"defaults\": {} }"));
+    }
+
+    private File writeManifest(String json) throws IOException {
+        File manifest = new File(baseDirectory, "manifest.json");
+        FileUtils.write(manifest, json, StandardCharsets.UTF_8);
+        return manifest;
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.feature.cpconverter.handlers.DefaultConfigurationsCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConversionDaemonTest {
+
+    private File outputDirectory;
+
+    private File tokenFile;
+
+    private ConversionDaemon daemon;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDirectory = new File(System.getProperty("java.io.tmpdir"), getClass().getName() + '_' + System.currentTimeMillis());
+        outputDirectory.mkdirs();
+        tokenFile = new File(outputDirectory, "daemon.token");
+        daemon = new ConversionDaemon(0, 2, new DefaultConfigurationsCache(), tokenFile);
+        daemon.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        daemon.stop();
+        assertFalse(tokenFile.exists());
+        FileUtils.deleteQuietly(outputDirectory);
+    }
+
+    @Test
+    public void eventsStreamedBack() throws Exception {
+        File contentPackage = FileUtils.toFile(getClass().getResource("/org/apache/sling/feature/cpconverter/test-content-package.zip"));
+
+        List<String> events = post("/convert", "{"
+                                               + "\"name\": \"test\","
+                                               + "\"content-packages\": [ \"" + contentPackage.getAbsolutePath() + "\" ],"
+                                               + "\"merge-configurations\": true,"
+                                               + "\"artifacts-output-directory\": \"" + new File(outputDirectory, "artifacts").getAbsolutePath() + "\","
+                                               + "\"features-output-directory\": \"" + new File(outputDirectory, "features").getAbsolutePath() + "\""
+                                               + "}");
+
+        List<String> lifecycle = new ArrayList<>();
+        boolean progressReported = false;
+        for (String event : events) {
+            if (event.contains("\"event\":\"progress\"")) {
+                progressReported = true;
+            } else {
+                lifecycle.add(event);
+            }
+        }
+
+        assertTrue(progressReported);
+        assertEquals(3, lifecycle.size());
+        assertTrue(lifecycle.get(0).contains("\"queued\""));
+        assertTrue(lifecycle.get(1).contains("\"started\""));
+        assertTrue(lifecycle.get(2), lifecycle.get(2).contains("\"succeeded\""));
+        assertTrue(new File(outputDirectory, "features/asd.retail.all.json").exists());
+    }
+
+    @Test
+    public void failuresStreamedBack() throws Exception {
+        List<String> events = post("/convert", "{ \"content-packages\": [ \"/does/not/exist.zip\" ] }");
+
+        assertEquals(3, events.size());
+        assertTrue(events.get(2).contains("\"failed\""));
+    }
+
+    @Test
+    public void tokenFileReadableByOwnerOnly() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+    }
+
+    @Test
+    public void requestsWithoutTokenRejected() throws Exception {
+        assertEquals(401, request("GET", "/status", null, Collections.emptyMap()).getResponseCode());
+        assertEquals(401, request("GET", "/status", null, Collections.singletonMap("Authorization", "Bearer invalid")).getResponseCode());
+        assertEquals(200, request("GET", "/status", null, authorized()).getResponseCode());
+    }
+
+    @Test
+    public void crossOriginRequestsRejected() throws Exception {
+        assertEquals(403, rawStatus("127.0.0.1:" + daemon.getPort(), "Origin: http://example.com"));
+    }
+
+    @Test
+    public void nonLoopbackHostsRejected() throws Exception {
+        // as sent by a browser after a DNS rebinding
+        assertEquals(403, rawStatus("attacker.example.com:" + daemon.getPort()));
+        assertEquals(200, rawStatus("localhost:" + daemon.getPort()));
+    }
+
+    @Test
+    public void nonJsonRequestsRejected() throws Exception {
+        Map<String, String> headers = authorized();
+        headers.put("Content-Type", "text/plain");
+
+        assertEquals(415, request("POST", "/convert", "{}", headers).getResponseCode());
+    }
+
+    private Map<String, String> authorized() throws Exception {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer " + new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.US_ASCII));
+        return headers;
+    }
+
+    // Host and Origin are restricted headers, HttpURLConnection would not send them
+    private int rawStatus(String host, String...headers) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            StringBuilder request = new StringBuilder("GET /status HTTP/1.1\r\n")
+                                    .append("Host: ").append(host).append("\r\n")
+                                    .append("Authorization: ").append(authorized().get("Authorization"))
+                                    .append("\r\n");
+            for (String header : headers) {
+                request.append(header).append("\r\n");
+            }
+            request.append("Connection: close\r\n\r\n");
+
+            socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            // i.e. HTTP/1.1 403 Forbidden
+            return Integer.parseInt(reader.readLine().split(" ")[1]);
+        }
+    }
+
+    private HttpURLConnection request(String method, String path, String body, Map<String, String> headers) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + daemon.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private List<String> post(String path, String body) throws Exception {
+        Map<String, String> headers = authorized();
+        headers.put("Content-Type", "application/json");
+
+        HttpURLConnection connection = request("POST", path, body, headers);
+
+        assertEquals(200, connection.getResponseCode());
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+}
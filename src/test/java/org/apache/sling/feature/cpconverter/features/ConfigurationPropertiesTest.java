@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.sling.feature.Configuration;
+import org.apache.sling.feature.Feature;
+import org.junit.Test;
+
+public class ConfigurationPropertiesTest {
+
+    @Test
+    public void insertionOrderPreserved() {
+        ConfigurationProperties properties = new ConfigurationProperties(2);
+        List<String> expected = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            properties.put("key" + i, i);
+            expected.add("key" + i);
+        }
+
+        // removal shifts positions, lookups have to be still consistent
+        properties.remove("key15");
+        expected.remove("key15");
+
+        assertEquals(expected, Collections.list(properties.keys()));
+        assertEquals(19, properties.size());
+        assertNull(properties.get("key15"));
+        for (int i = 20; i > 0; i--) {
+            if (i != 15) {
+                assertEquals(i, properties.get("key" + i));
+            }
+        }
+
+        assertEquals(20, properties.put("key20", 200));
+        assertEquals(200, properties.get("key20"));
+        assertEquals(19, properties.size());
+    }
+
+    @Test
+    public void multiValuesCompacted() {
+        ConfigurationProperties properties = new ConfigurationProperties();
+        properties.put("longs", Arrays.asList(1L, 2L));
+        properties.put("booleans", new Boolean[] { true, false });
+        properties.put("doubles", new Object[] { 1.5D, 2.5D });
+        properties.put("strings", Arrays.asList("a", "b"));
+        properties.put("mixed", Arrays.asList("a", 1L));
+        properties.put("integers", new Integer[] { 1, 2 });
+
+        assertArrayEquals(new long[] { 1L, 2L }, (long[]) properties.get("longs"));
+        assertTrue(Arrays.equals(new boolean[] { true, false }, (boolean[]) properties.get("booleans")));
+        assertArrayEquals(new double[] { 1.5D, 2.5D }, (double[]) properties.get("doubles"), 0D);
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) properties.get("strings"));
+        assertArrayEquals(new Object[] { "a", 1L }, (Object[]) properties.get("mixed"));
+        // not supported types are kept as they are
+        assertArrayEquals(new Integer[] { 1, 2 }, (Integer[]) properties.get("integers"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValuesNotAllowed() {
+        new ConfigurationProperties().put("key", null);
+    }
+
+    @Test
+    public void adoptedByFeaturesManager() {
+        FeaturesManager featuresManager = new DefaultFeaturesManager();
+        featuresManager.init("org.apache.sling", "org.apache.sling.cp2fm", "0.0.1");
+
+        ConfigurationProperties properties = new ConfigurationProperties();
+        properties.put("user.default", "admin");
+        properties.put(":configurator:feature:service.bundleLocation", "location");
+
+        featuresManager.addConfiguration(null, "org.apache.sling.Test", properties);
+
+        Feature feature = featuresManager.getTargetFeature();
+        Configuration configuration = feature.getConfigurations().getConfiguration("org.apache.sling.Test");
+        assertSame(properties, configuration.getProperties());
+        assertEquals(1, configuration.getConfigurationProperties().size());
+
+        Configuration copy = configuration.copy("org.apache.sling.Copy");
+        Enumeration<String> keys = copy.getProperties().keys();
+        assertEquals("user.default", keys.nextElement());
+        assertEquals(":configurator:feature:service.bundleLocation", keys.nextElement());
+    }
+
+}
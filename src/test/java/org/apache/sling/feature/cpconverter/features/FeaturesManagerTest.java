@@ -16,6 +16,22 @@
  */
 package org.apache.sling.feature.cpconverter.features;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.feature.Feature;
+import org.apache.sling.feature.io.json.FeatureJSONReader;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -64,4 +80,182 @@ public class FeaturesManagerTest {
         featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.cm2fm", "0.0.1", null, null);
     }
 
+    @Test
+    public void serializeOverridesIdWithoutAlteringTheModel() throws Exception {
+        File outputDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        try {
+            featuresManager = new DefaultFeaturesManager(true,
+                                                         5,
+                                                         outputDirectory,
+                                                         "org.apache.sling:${{filename}}:slingosgifeature:1.0.0",
+                                                         new HashMap<>());
+            featuresManager.init("org.apache.sling", "cp2fm.test", "0.0.1");
+            featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+            for (String runMode : new String[] { "author", "publish", "author.prod", "publish.prod" }) {
+                featuresManager.addArtifact(runMode, "org.apache.sling", "org.apache.sling.models.api", "1.3.8", null, "jar");
+            }
+
+            featuresManager.serialize();
+
+            assertEquals("org.apache.sling:cp2fm.test:slingosgifeature:0.0.1", featuresManager.getTargetFeature().getId().toMvnId());
+            assertEquals("org.apache.sling:cp2fm.test:slingosgifeature:1.0.0", readFeature(outputDirectory, "cp2fm.test.json").getId().toMvnId());
+            assertEquals("org.apache.sling:cp2fm.test-author.prod:slingosgifeature:author.prod:1.0.0",
+                         readFeature(outputDirectory, "cp2fm.test-author.prod.json").getId().toMvnId());
+        } finally {
+            FileUtils.deleteQuietly(outputDirectory);
+        }
+    }
+
+    @Test
+    public void runModesSerializedInDeterministicOrder() throws Exception {
+        File outputDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        try {
+            featuresManager = new DefaultFeaturesManager(true, 5, outputDirectory, null, null);
+            featuresManager.init("org.apache.sling", "cp2fm.test", "0.0.1");
+            featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+            String[] runModes = { "publish.stage", "author", "publish", "author.prod", "publish.prod", "author.stage" };
+            for (String runMode : runModes) {
+                featuresManager.addArtifact(runMode, "org.apache.sling", "org.apache.sling.models.api", "1.3.8", null, "jar");
+            }
+
+            featuresManager.serialize();
+
+            List<String> mappings = new ArrayList<>();
+            for (String line : Files.readAllLines(new File(outputDirectory, "runmode.mapping").toPath(), StandardCharsets.ISO_8859_1)) {
+                if (!line.startsWith("#")) {
+                    mappings.add(line);
+                }
+            }
+            assertEquals(Arrays.asList("(default)=cp2fm.test.json",
+                                       "author=cp2fm.test-author.json",
+                                       "author.prod=cp2fm.test-author.prod.json",
+                                       "author.stage=cp2fm.test-author.stage.json",
+                                       "publish=cp2fm.test-publish.json",
+                                       "publish.prod=cp2fm.test-publish.prod.json",
+                                       "publish.stage=cp2fm.test-publish.stage.json"),
+                         mappings);
+
+            // no temporary file left aside: the Feature files, runmode.mapping and its lock file only
+            assertTrue(new File(outputDirectory, ".runmode.mapping.lock").isFile());
+            assertEquals(runModes.length + 3, outputDirectory.list().length);
+        } finally {
+            FileUtils.deleteQuietly(outputDirectory);
+        }
+    }
+
+    @Test
+    public void spilledConfigurationsSerializedAsInMemoryOnes() throws Exception {
+        File inMemoryDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        File spilledDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        File spillDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        try {
+            DefaultFeaturesManager inMemory = new DefaultFeaturesManager(true, 5, inMemoryDirectory, null, null);
+            DefaultFeaturesManager spilled = new DefaultFeaturesManager(true, 5, spilledDirectory, null, null)
+                                             .setConfigurationsSpillDirectory(spillDirectory);
+
+            for (DefaultFeaturesManager manager : new DefaultFeaturesManager[] { inMemory, spilled }) {
+                manager.init("org.apache.sling", "cp2fm.test", "0.0.1");
+                manager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+                for (int i = 0; i < 100; i++) {
+                    Hashtable<String, Object> properties = new Hashtable<>();
+                    properties.put("index", i);
+                    properties.put("enabled", i % 2 == 0);
+                    manager.addConfiguration(i % 3 == 0 ? "publish" : null, "org.apache.sling.test~" + i, properties);
+                }
+                Hashtable<String, Object> properties = new Hashtable<>();
+                properties.put("index", -1);
+                manager.addConfiguration(null, "org.apache.sling.test~1", properties);
+
+                manager.serialize();
+            }
+
+            for (String fileName : new String[] { "cp2fm.test.json", "cp2fm.test-publish.json" }) {
+                assertEquals(FileUtils.readFileToString(new File(inMemoryDirectory, fileName), StandardCharsets.UTF_8),
+                             FileUtils.readFileToString(new File(spilledDirectory, fileName), StandardCharsets.UTF_8));
+            }
+            // stored configurations are removed once serialized
+            assertEquals(0, spillDirectory.list().length);
+        } finally {
+            FileUtils.deleteQuietly(inMemoryDirectory);
+            FileUtils.deleteQuietly(spilledDirectory);
+            FileUtils.deleteQuietly(spillDirectory);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void spilledConfigurationsDoNotAllowSamePid() throws Exception {
+        File spillDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        try {
+            DefaultFeaturesManager spilled = new DefaultFeaturesManager(false, 5, spillDirectory, null, null)
+                                             .setConfigurationsSpillDirectory(spillDirectory);
+            spilled.init("org.apache.sling", "cp2fm.test", "0.0.1");
+            spilled.addConfiguration(null, "org.apache.sling.test", new Hashtable<String, Object>());
+            spilled.addConfiguration(null, "org.apache.sling.test", new Hashtable<String, Object>());
+        } finally {
+            FileUtils.deleteQuietly(spillDirectory);
+        }
+    }
+
+    @Test
+    public void closeReleasesNotSerializedSpilledConfigurations() throws Exception {
+        File spillDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        try {
+            DefaultFeaturesManager spilled = new DefaultFeaturesManager(true, 5, spillDirectory, null, null)
+                                             .setConfigurationsSpillDirectory(spillDirectory);
+            spilled.init("org.apache.sling", "cp2fm.test", "0.0.1");
+            spilled.addConfiguration(null, "org.apache.sling.test", new Hashtable<String, Object>());
+            assertEquals(1, spillDirectory.list().length);
+
+            spilled.close();
+
+            assertEquals(0, spillDirectory.list().length);
+        } finally {
+            FileUtils.deleteQuietly(spillDirectory);
+        }
+    }
+
+    @Test
+    public void duplicatedArtifactsAddedOnce() throws Exception {
+        featuresManager.init("org.apache.sling", "cp2fm.test", "0.0.1");
+        featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+        featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+        // conflicting versions are reported, but both kept
+        featuresManager.addArtifact(null, "org.apache.sling", "org.apache.sling.api", "2.21.0", null, "jar");
+        // same GAV in a different run-mode is not a duplicate
+        featuresManager.addArtifact("author", "org.apache.sling", "org.apache.sling.api", "2.20.0", null, "jar");
+
+        assertEquals(2, featuresManager.getTargetFeature().getBundles().size());
+        assertEquals(1, featuresManager.getRunMode("author").getBundles().size());
+    }
+
+    @Test
+    public void samePidConfigurationsMerged() throws Exception {
+        featuresManager.init("org.apache.sling", "cp2fm.test", "0.0.1");
+        for (int i = 0; i < 3; i++) {
+            Hashtable<String, Object> properties = new Hashtable<>();
+            properties.put("key" + i, i);
+            featuresManager.addConfiguration(null, "org.apache.sling.test", properties);
+        }
+
+        Feature feature = featuresManager.getTargetFeature();
+        assertEquals(1, feature.getConfigurations().size());
+        assertEquals(3, feature.getConfigurations().get(0).getProperties().size());
+    }
+
+    @Test
+    public void configurationsIndexResetOnInit() throws Exception {
+        featuresManager = new DefaultFeaturesManager(false, 5, new File(System.getProperty("java.io.tmpdir")), null, null);
+        for (int i = 0; i < 2; i++) {
+            featuresManager.init("org.apache.sling", "cp2fm.test", "0.0." + i);
+            featuresManager.addConfiguration(null, "org.apache.sling.test", new Hashtable<String, Object>());
+        }
+    }
+
+    private static Feature readFeature(File outputDirectory, String fileName) throws Exception {
+        File featureFile = new File(outputDirectory, fileName);
+        try (Reader reader = Files.newBufferedReader(featureFile.toPath(), StandardCharsets.UTF_8)) {
+            return FeatureJSONReader.read(reader, featureFile.getAbsolutePath());
+        }
+    }
+
 }
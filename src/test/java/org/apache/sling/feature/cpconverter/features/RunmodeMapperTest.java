@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RunmodeMapperTest {
+
+    private File outputDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(outputDirectory);
+    }
+
+    @Test
+    public void fileNamesSharingPrefixesAreKept() throws Exception {
+        RunmodeMapper runmodeMapper = RunmodeMapper.open(outputDirectory);
+        runmodeMapper.addOrUpdate("author", "asd.retail.all-author.json");
+        runmodeMapper.addOrUpdate("author", "all-author.json");
+        runmodeMapper.addOrUpdate("author", "asd.retail.all-author.json");
+        runmodeMapper.save();
+
+        assertEquals("asd.retail.all-author.json,all-author.json", load().getProperty("author"));
+    }
+
+    @Test
+    public void savesMergedWithPreviousMappings() throws Exception {
+        RunmodeMapper first = RunmodeMapper.open(outputDirectory);
+        first.addOrUpdate(null, "a.json");
+        first.addOrUpdate("publish", "a-publish.json");
+        first.save();
+
+        RunmodeMapper second = RunmodeMapper.open(outputDirectory);
+        second.addOrUpdate(null, "b.json");
+        second.save();
+
+        Properties mapping = load();
+        assertEquals("a.json,b.json", mapping.getProperty("(default)"));
+        assertEquals("a-publish.json", mapping.getProperty("publish"));
+    }
+
+    @Test
+    public void repeatedSavesProduceIdenticalFiles() throws Exception {
+        byte[][] contents = new byte[2][];
+        for (int i = 0; i < contents.length; i++) {
+            RunmodeMapper runmodeMapper = RunmodeMapper.open(outputDirectory);
+            runmodeMapper.addOrUpdate("publish", "a-publish.json");
+            runmodeMapper.addOrUpdate(null, "a.json");
+            runmodeMapper.addOrUpdate("author", "a-author.json");
+            runmodeMapper.save();
+
+            File runmodeMappingFile = new File(outputDirectory, "runmode.mapping");
+            contents[i] = Files.readAllBytes(runmodeMappingFile.toPath());
+            assertTrue(runmodeMappingFile.delete());
+            // Properties dates have a seconds resolution
+            Thread.sleep(1100);
+        }
+
+        assertArrayEquals(contents[0], contents[1]);
+        String[] lines = new String(contents[0], StandardCharsets.ISO_8859_1).split("\\R");
+        assertArrayEquals(new String[] {
+                              "#File edited by the Apache Sling Content Package to Sling Feature converter",
+                              "(default)=a.json",
+                              "author=a-author.json",
+                              "publish=a-publish.json"
+                          }, lines);
+    }
+
+    @Test
+    public void concurrentSavesDoNotLoseMappings() throws Exception {
+        int converters = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < converters; i++) {
+                String fileName = "feature-" + i + ".json";
+                futures.add(executor.submit(() -> {
+                    RunmodeMapper runmodeMapper = RunmodeMapper.open(outputDirectory);
+                    runmodeMapper.addOrUpdate(null, fileName);
+                    runmodeMapper.save();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String[] fileNames = load().getProperty("(default)").split(",");
+        assertEquals(converters, fileNames.length);
+        assertEquals(converters, new HashSet<>(Arrays.asList(fileNames)).size());
+    }
+
+    private Properties load() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(new File(outputDirectory, "runmode.mapping").toPath())) {
+            properties.load(input);
+        }
+        return properties;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.feature.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpilledConfigurationsTest {
+
+    private File storeFile;
+
+    private SpilledConfigurations configurations;
+
+    @Before
+    public void setUp() throws Exception {
+        storeFile = File.createTempFile("configurations-", ".bin");
+        configurations = new SpilledConfigurations(storeFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configurations.close();
+        assertFalse(storeFile.exists());
+    }
+
+    @Test
+    public void configurationsStreamedInInsertionOrder() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            Hashtable<String, Object> properties = new Hashtable<>();
+            properties.put("index", (long) i);
+            properties.put("names", new String[] { "a" + i, "b" + i });
+            configurations.append("pid." + i, properties);
+        }
+
+        assertEquals(1000, configurations.size());
+        assertTrue(configurations.contains("pid.999"));
+
+        int i = 0;
+        for (Configuration configuration : configurations) {
+            assertEquals("pid." + i, configuration.getPid());
+            assertEquals((long) i, configuration.getProperties().get("index"));
+            assertArrayEquals(new String[] { "a" + i, "b" + i }, (String[]) configuration.getProperties().get("names"));
+            i++;
+        }
+        assertEquals(1000, i);
+    }
+
+    @Test
+    public void samePidConfigurationsMerged() throws Exception {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("a", "1");
+        properties.put("b", "1");
+        configurations.append("merged", properties);
+
+        properties = new Hashtable<>();
+        properties.put("c", "2");
+        configurations.append("single", properties);
+
+        properties = new Hashtable<>();
+        properties.put("b", "3");
+        configurations.append("merged", properties);
+
+        List<String> pids = new ArrayList<>();
+        Iterator<Configuration> iterator = configurations.iterator();
+        Configuration merged = iterator.next();
+        pids.add(merged.getPid());
+        while (iterator.hasNext()) {
+            pids.add(iterator.next().getPid());
+        }
+
+        assertEquals(Arrays.asList("merged", "single"), pids);
+        assertEquals("1", merged.getProperties().get("a"));
+        assertEquals("3", merged.getProperties().get("b"));
+    }
+
+}
@@ -67,4 +67,57 @@ public class RegexBasedResourceFilterTest {
         assertTrue(filter.isFilteredOut("/apps/myapp/myEnvironment.xyz/something.zip"));
     }
 
+    @Test
+    public void literalPrefixesFilteredOut() {
+        filter.addFilteringPattern("/jcr_root/apps/legacy/.*");
+        filter.addFilteringPattern("/jcr_root/apps/legacy/deep/.*");
+        filter.addFilteringPattern("/jcr_root/etc/my\\.config\\.json");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/legacy/.content.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/legacy/deep/down/file.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/my.config.json"));
+
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/legacy.xml"));
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/other/.content.xml"));
+        assertFalse(filter.isFilteredOut("/jcr_root/etc/myXconfigXjson"));
+    }
+
+    @Test
+    public void mixedPatternsFilteredOut() {
+        filter.addFilteringPattern("(?i).*\\.ZIP");
+        filter.addFilteringPattern("/jcr_root/(\\w+)/\\1\\.xml");
+        filter.addFilteringPattern("/jcr_root/apps/.*");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/content/package.zip"));
+        assertTrue(filter.isFilteredOut("/jcr_root/conf/conf.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/whatever"));
+
+        assertFalse(filter.isFilteredOut("/jcr_root/conf/other.xml"));
+        assertFalse(filter.isFilteredOut("/jcr_root/content/package.jar"));
+    }
+
+    @Test
+    public void patternsAddedAfterFiltering() {
+        filter.addFilteringPattern("/jcr_root/apps/.*");
+
+        assertFalse(filter.isFilteredOut("/jcr_root/libs/file.xml"));
+
+        filter.addFilteringPattern("/jcr_root/libs/.*");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/libs/file.xml"));
+    }
+
+    @Test
+    public void subtreesFilteredOut() {
+        filter.addFilteringPattern("/jcr_root/content/dam/.*");
+        filter.addFilteringPattern(".*\\.zip");
+
+        assertTrue(filter.isSubtreeFilteredOut("/jcr_root/content/dam"));
+        assertTrue(filter.isSubtreeFilteredOut("/jcr_root/content/dam/images"));
+
+        assertFalse(filter.isSubtreeFilteredOut("/jcr_root/content"));
+        assertFalse(filter.isSubtreeFilteredOut("/jcr_root/content/damaged"));
+        assertFalse(filter.isSubtreeFilteredOut("/jcr_root/etc/packages"));
+    }
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.filtering;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RuleBasedResourceFilterTest {
+
+    private RuleBasedResourceFilter filter;
+
+    @Before
+    public void setUp() {
+        filter = new RuleBasedResourceFilter();
+    }
+
+    @After
+    public void tearDown() {
+        filter = null;
+    }
+
+    @Test
+    public void prefixRules() {
+        filter.addFilteringRule("/jcr_root/apps/legacy/.*");
+        filter.addFilteringRule("prefix:/jcr_root/etc/leg");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/legacy/.content.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/legacy/deep/down/file.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/leg"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/legacy/file.xml"));
+
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/legacy"));
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/legacy.xml"));
+        assertFalse(filter.isFilteredOut("/jcr_root/etc/le"));
+
+        assertTrue(filter.isSubtreeFilteredOut("/jcr_root/apps/legacy"));
+        assertTrue(filter.isSubtreeFilteredOut("/jcr_root/etc/legacy"));
+        assertFalse(filter.isSubtreeFilteredOut("/jcr_root/apps"));
+    }
+
+    @Test
+    public void globRules() {
+        filter.addFilteringRule("glob:/jcr_root/**/*.zip");
+        filter.addFilteringRule("glob:/jcr_root/apps/*/config/?.json");
+        filter.addFilteringRule("glob:/jcr_root/content/dam/**");
+        filter.addFilteringRule("glob:/jcr_root/etc/exact.xml");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/package.zip"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/packages/package.zip"));
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/myapp/config/a.json"));
+        assertTrue(filter.isFilteredOut("/jcr_root/content/dam/images/image.png"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/exact.xml"));
+
+        assertFalse(filter.isFilteredOut("/jcr_root/package.jar"));
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/myapp/config/ab.json"));
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/myapp/sub/config/a.json"));
+        assertFalse(filter.isFilteredOut("/jcr_root/content/dam"));
+        assertFalse(filter.isFilteredOut("/jcr_root/etc/exactXxml"));
+
+        assertTrue(filter.isSubtreeFilteredOut("/jcr_root/content/dam"));
+        assertFalse(filter.isSubtreeFilteredOut("/jcr_root/apps/myapp/config"));
+    }
+
+    @Test
+    public void regexRules() {
+        filter.addFilteringRule(".*\\/myEnvironment(?!(\\.runMode1\\/|\\.runMode2\\/|\\/))(.*)(?=\\.zip$).*");
+        filter.addFilteringRule("regex:/jcr_root/apps/foo.xml");
+
+        assertTrue(filter.isFilteredOut("/apps/myapp/myEnvironment.subRunMode/something.zip"));
+        assertTrue(filter.isFilteredOut("/jcr_root/apps/fooXxml"));
+
+        assertFalse(filter.isFilteredOut("/apps/myapp/myEnvironment/something.zip"));
+    }
+
+    @Test
+    public void unmarkedRulesAreRegexes() {
+        // valid globs as well, but only evaluated as such when marked
+        filter.addFilteringRule("/jcr_root/etc/exact.xml");
+        filter.addFilteringRule("/jcr_root/conf/?.json");
+        // not a plain literal before .*
+        filter.addFilteringRule("/jcr_root/(content|var)/.*");
+
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/exact.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/etc/exactXxml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/conf.json"));
+        assertTrue(filter.isFilteredOut("/jcr_root/content/file.xml"));
+        assertTrue(filter.isFilteredOut("/jcr_root/var/file.xml"));
+
+        assertFalse(filter.isFilteredOut("/jcr_root/conf/a.json"));
+        assertFalse(filter.isFilteredOut("/jcr_root/apps/file.xml"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRuleNotAccepted() {
+        filter.addFilteringRule("");
+    }
+
+}
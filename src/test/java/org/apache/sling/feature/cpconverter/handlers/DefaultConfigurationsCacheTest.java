@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.handlers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class DefaultConfigurationsCacheTest {
+
+    private static Dictionary<String, Object> newConfiguration(String value) {
+        Dictionary<String, Object> configuration = new Hashtable<>();
+        configuration.put("key", value);
+        configuration.put("values", new String[] { "a", "b" });
+        return configuration;
+    }
+
+    @Test
+    public void cachedConfigurationsAreCopies() {
+        ConfigurationsCache cache = new DefaultConfigurationsCache();
+        cache.put("1", newConfiguration("value"));
+
+        Dictionary<String, Object> first = cache.get("1");
+        assertNotNull(first);
+        assertEquals("value", first.get("key"));
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) first.get("values"));
+
+        first.remove("key");
+        Dictionary<String, Object> second = cache.get("1");
+        assertNotSame(first, second);
+        assertEquals("value", second.get("key"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() {
+        ConfigurationsCache cache = new DefaultConfigurationsCache(2, null);
+        cache.put("1", newConfiguration("1"));
+        cache.put("2", newConfiguration("2"));
+        // touch the first one, so the second is the eldest
+        cache.get("1");
+        cache.put("3", newConfiguration("3"));
+
+        assertNotNull(cache.get("1"));
+        assertNull(cache.get("2"));
+        assertNotNull(cache.get("3"));
+    }
+
+    @Test
+    public void storedConfigurationsReusedAcrossInstances() throws Exception {
+        File storeDirectory = Files.createTempDirectory(getClass().getName()).toFile();
+        try {
+            new DefaultConfigurationsCache(storeDirectory).put("1", newConfiguration("value"));
+
+            Dictionary<String, Object> configuration = new DefaultConfigurationsCache(storeDirectory).get("1");
+            assertNotNull(configuration);
+            assertEquals("value", configuration.get("key"));
+            assertArrayEquals(new String[] { "a", "b" }, (String[]) configuration.get("values"));
+        } finally {
+            FileUtils.deleteDirectory(storeDirectory);
+        }
+    }
+
+    @Test
+    public void typedValuesStoredAsText() throws Exception {
+        File storeDirectory = Files.createTempDirectory(getClass().getName()).toFile();
+        try {
+            Dictionary<String, Object> stored = new Hashtable<>();
+            stored.put("integer", 1);
+            stored.put("float", Float.NaN);
+            stored.put("character", 'c');
+            stored.put("decimal", new BigDecimal("1.5"));
+            stored.put("longs", new long[] { 1L, 2L });
+            stored.put("booleans", new Boolean[] { true, false });
+            stored.put("mixed", new Object[] { "a", 1L, null });
+            new DefaultConfigurationsCache(storeDirectory).put("1", stored);
+
+            String[] entries = storeDirectory.list();
+            assertEquals(1, entries.length);
+            assertTrue(entries[0], entries[0].endsWith(".json"));
+
+            Dictionary<String, Object> configuration = new DefaultConfigurationsCache(storeDirectory).get("1");
+            assertNotNull(configuration);
+            assertEquals(1, configuration.get("integer"));
+            assertEquals(Float.NaN, configuration.get("float"));
+            assertEquals('c', configuration.get("character"));
+            assertEquals(new BigDecimal("1.5"), configuration.get("decimal"));
+            assertArrayEquals(new long[] { 1L, 2L }, (long[]) configuration.get("longs"));
+            assertArrayEquals(new boolean[] { true, false }, (boolean[]) configuration.get("booleans"));
+            assertArrayEquals(new Object[] { "a", 1L, null }, (Object[]) configuration.get("mixed"));
+        } finally {
+            FileUtils.deleteDirectory(storeDirectory);
+        }
+    }
+
+    @Test
+    public void unsupportedValuesNotStored() throws Exception {
+        File storeDirectory = Files.createTempDirectory(getClass().getName()).toFile();
+        try {
+            Dictionary<String, Object> configuration = newConfiguration("value");
+            configuration.put("unsupported", new StringBuilder("value"));
+            DefaultConfigurationsCache cache = new DefaultConfigurationsCache(storeDirectory);
+            cache.put("1", configuration);
+
+            assertEquals(0, storeDirectory.list().length);
+            // still available in memory
+            assertNotNull(cache.get("1"));
+        } finally {
+            FileUtils.deleteDirectory(storeDirectory);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeNotAccepted() {
+        new DefaultConfigurationsCache(0, null);
+    }
+
+}
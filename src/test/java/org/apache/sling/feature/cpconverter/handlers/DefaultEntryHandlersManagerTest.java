@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class DefaultEntryHandlersManagerTest {
+
+    @Test
+    public void declaredPatternsMatchHandlersPatterns() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/META-INF/services/" + EntryHandler.class.getName()),
+                                                                              StandardCharsets.UTF_8))) {
+            String className;
+            while ((className = reader.readLine()) != null) {
+                if (className.trim().isEmpty()) {
+                    continue;
+                }
+
+                Class<?> handlerClass = Class.forName(className.trim());
+                EntryHandlerPattern entryHandlerPattern = handlerClass.getAnnotation(EntryHandlerPattern.class);
+                assertNotNull(className + " does not declare its pattern", entryHandlerPattern);
+
+                AbstractRegexEntryHandler handler = (AbstractRegexEntryHandler) handlerClass.newInstance();
+                assertEquals(className, handler.getPattern().pattern(), entryHandlerPattern.value());
+            }
+        }
+    }
+
+    @Test
+    public void handlersInstantiatedOnce() {
+        DefaultEntryHandlersManager manager = new DefaultEntryHandlersManager();
+
+        String path = "/jcr_root/apps/asd/config/org.apache.sling.commons.log.LogManager.factory.config-asd-retail.cfg.json";
+        EntryHandler handler = manager.getEntryHandlerByEntryPath(path);
+        assertTrue(handler instanceof JsonConfigurationEntryHandler);
+        assertSame(handler, manager.getEntryHandlerByEntryPath(path));
+
+        assertTrue(manager.getEntryHandlerByEntryPath("/jcr_root/apps/asd/install/test-framework.jar") instanceof BundleEntryHandler);
+        assertNull(manager.getEntryHandlerByEntryPath("/jcr_root/content/asd/.content.xml"));
+    }
+
+}
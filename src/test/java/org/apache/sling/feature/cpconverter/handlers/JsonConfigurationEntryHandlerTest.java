@@ -16,10 +16,16 @@
  */
 package org.apache.sling.feature.cpconverter.handlers;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Dictionary;
 
 import org.apache.jackrabbit.vault.fs.io.Archive;
 import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
@@ -43,4 +49,28 @@ public class JsonConfigurationEntryHandlerTest {
         new JsonConfigurationEntryHandler().handle(resourceConfiguration, archive, entry, converter);
     }
 
+    @Test
+    public void typedValuesAndComments() throws Exception {
+        String json = "{\n"
+                      + "  // line comment\n"
+                      + "  \"string\" : \"value\",\n"
+                      + "  \"number\" : 5,\n"
+                      + "  /* block comment */\n"
+                      + "  \"integer:Integer\" : 10,\n"
+                      + "  \"array:String[]\" : [ \"a\", \"b\" ],\n"
+                      + "  \":configurator:policy\" : \"force\"\n"
+                      + "}";
+
+        Dictionary<String, Object> configuration = new JsonConfigurationEntryHandler()
+                                                   .parseConfiguration("org.apache.sling.Test",
+                                                                       new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(4, configuration.size());
+        assertEquals("value", configuration.get("string"));
+        assertEquals(5L, configuration.get("number"));
+        assertEquals(10, configuration.get("integer"));
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) configuration.get("array"));
+        assertNull(configuration.get(":configurator:policy"));
+    }
+
 }
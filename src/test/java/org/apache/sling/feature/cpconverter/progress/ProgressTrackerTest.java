@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.progress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sling.feature.cpconverter.progress.ProgressEvent.Type;
+import org.junit.Test;
+
+public class ProgressTrackerTest {
+
+    @Test
+    public void estimateUnknownUntilSomethingIsProcessed() {
+        assertEquals(-1, ProgressTracker.estimate(1000, 0, 10));
+        assertEquals(-1, ProgressTracker.estimate(1000, 5, -1));
+    }
+
+    @Test
+    public void estimateByCurrentRate() {
+        assertEquals(3000, ProgressTracker.estimate(1000, 25, 100));
+        assertEquals(0, ProgressTracker.estimate(1000, 100, 100));
+    }
+
+    @Test
+    public void eventsSequence() {
+        List<ProgressEvent> events = new ArrayList<>();
+        ProgressTracker tracker = new ProgressTracker(events::add, "my_packages:test:1.0", 2, 30);
+
+        tracker.start();
+        tracker.entryProcessed("/jcr_root/a", 10);
+        tracker.entryProcessed("/jcr_root/b", 20);
+        tracker.complete();
+
+        assertEquals(4, events.size());
+        assertEquals(Type.PACKAGE_STARTED, events.get(0).getType());
+        assertEquals(Type.ENTRY_PROCESSED, events.get(1).getType());
+        assertEquals("/jcr_root/a", events.get(1).getPath());
+        assertEquals(1, events.get(1).getEntriesProcessed());
+        assertEquals(10, events.get(1).getBytesProcessed());
+        assertEquals(Type.PACKAGE_COMPLETED, events.get(3).getType());
+        assertEquals(2, events.get(3).getEntriesProcessed());
+        assertEquals(30, events.get(3).getBytesProcessed());
+        assertEquals(0, events.get(3).getEta());
+    }
+
+    @Test
+    public void rateLimitingKeepsLifecycleEvents() {
+        List<ProgressEvent> events = new ArrayList<>();
+        ProgressTracker tracker = new ProgressTracker(new RateLimitedProgressListener(events::add, 60000), "test", 100, -1);
+
+        tracker.start();
+        for (int i = 0; i < 100; i++) {
+            tracker.entryProcessed("/jcr_root/" + i, -1);
+        }
+        tracker.complete();
+
+        assertEquals(3, events.size());
+        assertEquals(Type.PACKAGE_STARTED, events.get(0).getType());
+        assertEquals(Type.ENTRY_PROCESSED, events.get(1).getType());
+        assertEquals(Type.PACKAGE_COMPLETED, events.get(2).getType());
+        assertEquals(100, events.get(2).getEntriesProcessed());
+    }
+
+    @Test
+    public void ndjsonOneLinePerEvent() {
+        StringWriter writer = new StringWriter();
+        NdjsonProgressListener listener = new NdjsonProgressListener(writer);
+
+        listener.onProgress(ProgressEvent.phaseChanged("test", ProgressEvent.Phase.CONVERTING));
+        new ProgressTracker(listener, "test", 1, -1).start();
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{") && lines[0].contains("\"phase_changed\""));
+        assertTrue(lines[1], lines[1].contains("\"package_started\""));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.shared;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AtomicFilesTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory(getClass().getName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void targetReplaced() throws Exception {
+        Path target = directory.resolve("target.txt");
+        Files.write(target, "old".getBytes(UTF_8));
+
+        AtomicFiles.write(target, output -> output.write("new".getBytes(UTF_8)));
+
+        assertArrayEquals("new".getBytes(UTF_8), Files.readAllBytes(target));
+        // no temporary file left behind
+        assertEquals(1, directory.toFile().list().length);
+    }
+
+    @Test
+    public void targetUntouchedOnFailure() throws Exception {
+        Path target = directory.resolve("target.txt");
+        Files.write(target, "old".getBytes(UTF_8));
+
+        try {
+            AtomicFiles.write(target, output -> {
+                output.write("partial".getBytes(UTF_8));
+                throw new IOException("expected");
+            });
+            fail("The writer failure must be propagated");
+        } catch (IOException e) {
+            assertEquals("expected", e.getMessage());
+        }
+
+        assertArrayEquals("old".getBytes(UTF_8), Files.readAllBytes(target));
+        assertEquals(1, directory.toFile().list().length);
+    }
+
+    @Test
+    public void defaultPermissionsApplied() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        Path plain = Files.write(directory.resolve("plain.txt"), new byte[0]);
+        Path target = directory.resolve("target.txt");
+        AtomicFiles.write(target, output -> {});
+
+        assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(target));
+    }
+
+}
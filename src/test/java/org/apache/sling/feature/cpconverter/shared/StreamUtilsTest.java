@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.shared;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StreamUtilsTest {
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void copyStreams() throws Exception {
+        // bigger than a single buffer
+        byte[] data = randomBytes(200 * 1024);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(data.length, StreamUtils.copy(new ByteArrayInputStream(data), output));
+        assertArrayEquals(data, output.toByteArray());
+    }
+
+    @Test
+    public void copyFiles() throws Exception {
+        byte[] data = randomBytes(100 * 1024);
+        File source = File.createTempFile("stream-utils", ".source");
+        File target = File.createTempFile("stream-utils", ".target");
+        try {
+            Files.write(source.toPath(), data);
+
+            try (FileInputStream input = new FileInputStream(source);
+                    FileOutputStream output = new FileOutputStream(target)) {
+                // skip some bytes to make sure the current position is honored
+                input.read(new byte[10]);
+                assertEquals(data.length - 10, StreamUtils.copy(input, output));
+                assertEquals(-1, input.read());
+            }
+
+            byte[] expected = new byte[data.length - 10];
+            System.arraycopy(data, 10, expected, 0, expected.length);
+            assertArrayEquals(expected, Files.readAllBytes(target.toPath()));
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+
+    @Test
+    public void copyCharacters() throws Exception {
+        StringWriter writer = new StringWriter();
+        StreamUtils.copy(new StringReader("{ \"key\" : \"value\" }"), writer);
+        assertEquals("{ \"key\" : \"value\" }", writer.toString());
+    }
+
+}
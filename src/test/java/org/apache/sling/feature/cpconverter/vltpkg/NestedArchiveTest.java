@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+
+import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.Archive.Entry;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.junit.Test;
+
+public class NestedArchiveTest {
+
+    private static NestedArchive read(int maxInMemorySize) throws Exception {
+        Archive parent = mock(Archive.class);
+        Entry entry = mock(Entry.class);
+        when(entry.getName()).thenReturn("test_a-1.0.zip");
+        when(parent.openInputStream(entry)).thenReturn(NestedArchiveTest.class.getResourceAsStream("/org/apache/sling/feature/cpconverter/test_a-1.0.zip"));
+        return NestedArchive.read(parent, entry, maxInMemorySize);
+    }
+
+    private static void verify(NestedArchive archive) throws Exception {
+        VaultPackage vaultPackage = new BaseVaultPackageScanner(false) {}.open(archive);
+        try {
+            assertEquals(new PackageId("my_packages", "test_a", "1.0"), vaultPackage.getId());
+
+            // packages are traversed more than once
+            archive.open(false);
+            assertNotNull(archive.getJcrRoot());
+            archive.close();
+            archive.open(false);
+            assertNotNull(archive.getJcrRoot());
+            archive.close();
+        } finally {
+            vaultPackage.close();
+        }
+    }
+
+    @Test
+    public void smallPackagesInMemory() throws Exception {
+        NestedArchive archive = read(NestedArchive.DEFAULT_MAX_IN_MEMORY_SIZE);
+        try {
+            assertTrue(archive.isInMemory());
+            verify(archive);
+        } finally {
+            archive.release();
+        }
+    }
+
+    @Test
+    public void bigPackagesSpilled() throws Exception {
+        NestedArchive archive = read(10);
+        File spilled = new File(archive.toString());
+        try {
+            assertFalse(archive.isInMemory());
+            assertTrue(spilled.exists());
+            verify(archive);
+        } finally {
+            archive.release();
+        }
+        assertFalse(spilled.exists());
+    }
+
+    @Test
+    public void packagesInflatingOverTheLimitSpilled() throws Exception {
+        // test_a-1.0.zip is 4470 bytes, 6601 once inflated
+        NestedArchive archive = read(5000);
+        try {
+            assertFalse(archive.isInMemory());
+            verify(archive);
+        } finally {
+            archive.release();
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.vault.packaging.CyclicDependencyException;
+import org.apache.jackrabbit.vault.packaging.Dependency;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackageDependencyGraphTest {
+
+    private PackageDependencyGraph graph;
+
+    @Before
+    public void setUp() {
+        graph = new PackageDependencyGraph();
+    }
+
+    private void addPackage(String name, String dependencies) {
+        VaultPackage vaultPackage = mock(VaultPackage.class);
+        when(vaultPackage.getId()).thenReturn(new PackageId("my_packages", name, "1.0"));
+        when(vaultPackage.getDependencies()).thenReturn(Dependency.parse(dependencies));
+        graph.addPackage(vaultPackage);
+    }
+
+    private static List<String> toNames(List<VaultPackage> packages) {
+        List<String> names = new ArrayList<>();
+        for (VaultPackage vaultPackage : packages) {
+            names.add(vaultPackage.getId().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void diamondDependenciesAreNotCycles() throws Exception {
+        addPackage("top", "my_packages:left,my_packages:right");
+        addPackage("left", "my_packages:bottom");
+        addPackage("right", "my_packages:bottom:[1.0,2.0)");
+        addPackage("bottom", "");
+        addPackage("standalone", "my_packages:missing");
+
+        List<List<VaultPackage>> layers = graph.getLayers();
+
+        assertEquals(3, layers.size());
+        assertEquals("[bottom, standalone]", toNames(layers.get(0)).toString());
+        assertEquals("[left, right]", toNames(layers.get(1)).toString());
+        assertEquals("[top]", toNames(layers.get(2)).toString());
+        assertEquals("[bottom, standalone, left, right, top]", toNames(graph.getOrderedPackages()).toString());
+    }
+
+    @Test(expected = CyclicDependencyException.class)
+    public void cycleDetected() throws Exception {
+        addPackage("a", "my_packages:b");
+        addPackage("b", "my_packages:c");
+        addPackage("c", "my_packages:a");
+        addPackage("d", "");
+
+        graph.getLayers();
+    }
+
+    @Test
+    public void exportGraph() throws Exception {
+        addPackage("a", "my_packages:b");
+        addPackage("b", "");
+
+        StringWriter dot = new StringWriter();
+        graph.writeDot(dot);
+        assertTrue(dot.toString(), dot.toString().contains("\"my_packages:a:1.0\" -> \"my_packages:b:1.0\";"));
+
+        StringWriter json = new StringWriter();
+        graph.writeJson(json);
+        assertEquals("{\"packages\":["
+                     + "{\"id\":\"my_packages:a:1.0\",\"layer\":1,\"dependencies\":[\"my_packages:b:1.0\"]},"
+                     + "{\"id\":\"my_packages:b:1.0\",\"layer\":0,\"dependencies\":[]}"
+                     + "]}", json.toString());
+    }
+
+}
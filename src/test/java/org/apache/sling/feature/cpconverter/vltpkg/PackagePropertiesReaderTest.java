@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class PackagePropertiesReaderTest {
+
+    @Test
+    public void readPackageIdFromStream() throws Exception {
+        try (InputStream input = getClass().getResourceAsStream("/org/apache/sling/feature/cpconverter/test_a-1.0.zip")) {
+            assertEquals(new PackageId("my_packages", "test_a", "1.0"), PackagePropertiesReader.readPackageId(input));
+        }
+    }
+
+    @Test
+    public void notAContentPackage() throws Exception {
+        assertNull(PackagePropertiesReader.readPackageId(new ByteArrayInputStream(new byte[0])));
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.junit.Test;
+
+public class SubContentPackagesResolverTest {
+
+    @Test
+    public void latestVersionWins() {
+        SubContentPackagesResolver resolver = new SubContentPackagesResolver();
+
+        assertTrue(resolver.resolve(new PackageId("asd", "test-content", "0.1"), "/jcr_root/etc/packages/asd/test-content.zip"));
+        assertTrue(resolver.resolve(new PackageId("asd", "test-content", "0.2"), "/jcr_root/etc/packages/asd/test-content-0.2.zip"));
+        assertFalse(resolver.resolve(new PackageId("asd", "test-content", "0.1.5"), "/jcr_root/etc/packages/asd/test-content-0.1.5.zip"));
+
+        assertEquals(new PackageId("asd", "test-content", "0.2"), resolver.getLatestVersion("asd", "test-content"));
+        assertTrue(resolver.isIncluded("/jcr_root/etc/packages/asd/test-content-0.2.zip"));
+        assertFalse(resolver.isIncluded("/jcr_root/etc/packages/asd/test-content.zip"));
+        assertFalse(resolver.isIncluded("/jcr_root/etc/packages/asd/test-content-0.1.5.zip"));
+    }
+
+    @Test
+    public void sharedPathsStillIncluded() {
+        SubContentPackagesResolver resolver = new SubContentPackagesResolver();
+        String path = "/jcr_root/etc/packages/asd/content.zip";
+
+        assertTrue(resolver.resolve(new PackageId("asd", "first", "1.0"), path));
+        assertTrue(resolver.resolve(new PackageId("asd", "second", "1.0"), path));
+        assertTrue(resolver.resolve(new PackageId("asd", "first", "2.0"), "/jcr_root/etc/packages/asd/first-2.0.zip"));
+
+        assertTrue(resolver.isIncluded(path));
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.feature.cpconverter.vltpkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.apache.jackrabbit.vault.packaging.impl.PackageManagerImpl;
+import org.junit.Test;
+
+public class SyntheticPackagesTest {
+
+    @Test
+    public void syntheticPackageContainsMetadataOnly() throws Exception {
+        File file = FileUtils.toFile(getClass().getResource("../test_b-1.0.zip"));
+
+        byte[] syntheticPackage;
+        try (VaultPackage vaultPackage = new PackageManagerImpl().open(file)) {
+            syntheticPackage = VaultPackageAssembler.createSynthetic(vaultPackage);
+        }
+
+        Set<String> entries = new HashSet<>();
+        try (ZipInputStream zipInput = new ZipInputStream(new ByteArrayInputStream(syntheticPackage))) {
+            ZipEntry entry;
+            while ((entry = zipInput.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+
+        for (String expectedEntry : new String[] {
+                "jcr_root/",
+                "META-INF/vault/properties.xml",
+                "META-INF/vault/filter.xml",
+                "META-INF/vault/config.xml",
+                "META-INF/vault/settings.xml",
+                "META-INF/vault/definition/.content.xml"
+        }) {
+            assertTrue(expectedEntry + " not found in " + entries, entries.contains(expectedEntry));
+        }
+
+        assertEquals(new PackageId("my_packages", "test_b", "1.0-cp2fm-converted"),
+                     PackagePropertiesReader.readPackageId(new ByteArrayInputStream(syntheticPackage)));
+    }
+
+}
@@ -16,14 +16,18 @@
  */
 package org.apache.sling.feature.cpconverter.vltpkg;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
@@ -77,6 +81,26 @@ public class VaultPackageAssemblerTest {
         zipFile.close();
     }
 
+    @Test
+    public void metadataWrittenFirst() throws Exception {
+        File contentPackage = assembler.createPackage(testDirectory);
+
+        try (ZipInputStream zipInput = new ZipInputStream(new FileInputStream(contentPackage))) {
+            ZipEntry entry = zipInput.getNextEntry();
+            assertNotNull(entry);
+            assertEquals("META-INF/vault/properties.xml", entry.getName());
+
+            boolean content = false;
+            while ((entry = zipInput.getNextEntry()) != null) {
+                if (entry.getName().startsWith("META-INF/")) {
+                    assertFalse(entry.getName() + " found after the content", content);
+                } else {
+                    content = true;
+                }
+            }
+        }
+    }
+
     @Parameters
     public static Collection<Object[]> data() throws Exception {
         URL resource = VaultPackageAssemblerTest.class.getResource("../test-content-package.zip");